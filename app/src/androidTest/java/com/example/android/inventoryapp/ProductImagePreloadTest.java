@@ -0,0 +1,100 @@
+package com.example.android.inventoryapp;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.example.android.inventoryapp.data.Product;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that scrolling the product list set up like the catalog requests the pictures of the
+ * rows following the visible ones before those rows are bound.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductImagePreloadTest {
+
+    private static final int PRODUCT_COUNT = 100;
+    private static final int VISIBLE_ROWS = 10;
+
+    @Test
+    public void picturesOfNextRowsAreRequestedBeforeBinding() throws Exception {
+        final Context context = InstrumentationRegistry.getTargetContext();
+        final int preloadRows = context.getResources().getInteger(R.integer.catalog_image_preload_rows);
+        final List<Product> requested = new ArrayList<>();
+        final List<Integer> boundRows = new ArrayList<>();
+        final int[] lastVisibleRow = new int[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                List<Product> products = new ArrayList<>();
+                for (int i = 0; i < PRODUCT_COUNT; i++) {
+                    products.add(new Product(i, "Product " + i, 1, 1, "file:///nonexistent/" + i + ".jpg", null));
+                }
+                final ProductAdapter adapter = new ProductAdapter(context, null);
+                adapter.submitList(products);
+
+                // Record the requests the adapter builds for the preloader
+                ListPreloader.PreloadModelProvider<Product> modelProvider =
+                        new ListPreloader.PreloadModelProvider<Product>() {
+                            @Override
+                            public List<Product> getPreloadItems(int position) {
+                                return adapter.getPreloadItems(position);
+                            }
+
+                            @Override
+                            public RequestBuilder<Drawable> getPreloadRequestBuilder(Product product) {
+                                requested.add(product);
+                                return adapter.getPreloadRequestBuilder(product);
+                            }
+                        };
+
+                RecyclerView recyclerView = new RecyclerView(context);
+                LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+                recyclerView.setLayoutManager(layoutManager);
+                recyclerView.setAdapter(adapter);
+                CatalogActivity.addImagePreloader(recyclerView, modelProvider);
+
+                // Lay out the first rows, then scroll by one pixel as the user would
+                int rowHeight = context.getResources().getDimensionPixelSize(R.dimen.list_item_height);
+                recyclerView.measure(
+                        View.MeasureSpec.makeMeasureSpec(rowHeight * 4, View.MeasureSpec.EXACTLY),
+                        View.MeasureSpec.makeMeasureSpec(rowHeight * VISIBLE_ROWS, View.MeasureSpec.EXACTLY));
+                recyclerView.layout(0, 0, recyclerView.getMeasuredWidth(), recyclerView.getMeasuredHeight());
+                recyclerView.scrollBy(0, 1);
+
+                lastVisibleRow[0] = layoutManager.findLastVisibleItemPosition();
+                for (int i = 0; i < PRODUCT_COUNT; i++) {
+                    if (recyclerView.findViewHolderForAdapterPosition(i) != null) {
+                        boundRows.add(i);
+                    }
+                }
+            }
+        });
+
+        // The preloader starts at the last visible row, and requests the following ones
+        List<Long> requestedIds = new ArrayList<>();
+        for (Product product : requested) {
+            requestedIds.add(product.id);
+        }
+        for (int row = lastVisibleRow[0] + 1; row < lastVisibleRow[0] + preloadRows; row++) {
+            assertTrue("Picture of row " + row + " wasn't preloaded", requestedIds.contains((long) row));
+            assertFalse("Row " + row + " was bound before its picture was requested", boundRows.contains(row));
+        }
+    }
+}
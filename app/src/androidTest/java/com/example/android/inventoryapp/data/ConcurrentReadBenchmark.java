@@ -0,0 +1,113 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of full catalog reads while sales are written concurrently, with and without
+ * write-ahead logging. Results are written to the log under {@link #LOG_TAG}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ConcurrentReadBenchmark {
+
+    private static final String LOG_TAG = ConcurrentReadBenchmark.class.getSimpleName();
+
+    /**
+     * Name of the scratch database used by the benchmark
+     */
+    private static final String DATABASE_NAME = "concurrent_read_benchmark.db";
+
+    /**
+     * Number of products in the catalog
+     */
+    private static final int PRODUCT_COUNT = 10000;
+
+    /**
+     * Duration of each measurement
+     */
+    private static final long DURATION_MS = 5000;
+
+    @Test
+    public void readThroughputWithConcurrentWrites() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+
+        double rollbackJournalReads = measureReadsPerSecond(context, false);
+        double writeAheadLogReads = measureReadsPerSecond(context, true);
+
+        Log.i(LOG_TAG, "Full catalog reads/s with concurrent writes: rollback journal="
+                + rollbackJournalReads + ", WAL=" + writeAheadLogReads);
+        assertTrue(writeAheadLogReads > 0);
+    }
+
+    private double measureReadsPerSecond(Context context, boolean writeAheadLogging)
+            throws InterruptedException {
+        context.deleteDatabase(DATABASE_NAME);
+        final InventoryDbHelper dbHelper = new InventoryDbHelper(context, DATABASE_NAME, writeAheadLogging);
+        try {
+            TestProducts.insertProducts(dbHelper.getWritableDatabase(), PRODUCT_COUNT);
+
+            // Keep selling products on a background thread for the whole measurement
+            final AtomicBoolean writing = new AtomicBoolean(true);
+            final AtomicLong writes = new AtomicLong();
+            Thread writer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    SQLiteDatabase database = dbHelper.getWritableDatabase();
+                    ContentValues values = new ContentValues();
+                    long id = 1;
+                    while (writing.get()) {
+                        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, (int) (id % 100));
+                        database.update(ProductEntry.TABLE_NAME, values,
+                                ProductEntry._ID + "=?", new String[]{String.valueOf(id)});
+                        writes.incrementAndGet();
+                        id = id % PRODUCT_COUNT + 1;
+                    }
+                }
+            });
+            writer.start();
+
+            // Read the whole catalog as many times as possible in the meantime
+            long reads = 0;
+            long start = System.nanoTime();
+            long end = start + DURATION_MS * 1000000L;
+            while (System.nanoTime() < end) {
+                Cursor cursor = dbHelper.getReadableDatabase().query(ProductEntry.TABLE_NAME,
+                        null, null, null, null, null, null);
+                try {
+                    while (cursor.moveToNext()) {
+                        cursor.getInt(cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                reads++;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            writing.set(false);
+            writer.join();
+
+            Log.i(LOG_TAG, "WAL=" + writeAheadLogging + ": " + reads + " reads, "
+                    + writes.get() + " writes in " + seconds + "s");
+            return reads / seconds;
+        } finally {
+            dbHelper.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentProvider;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.test.mock.MockContentResolver;
+
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link ProductImages} stores pictures that document providers stream through a
+ * pipe, as cloud and streaming providers do, and not only the ones they serve as files.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProductImagesTest {
+
+    private static final String AUTHORITY = "com.example.android.inventoryapp.test.pipe";
+
+    private static final long PRODUCT_ID = 1;
+
+    /**
+     * Serves the given picture at every URI, written to a pipe.
+     */
+    private static final class PipeProvider extends ContentProvider
+            implements ContentProvider.PipeDataWriter<byte[]> {
+        private final byte[] mPicture;
+
+        PipeProvider(byte[] picture) {
+            mPicture = picture;
+        }
+
+        @Override
+        public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+            return openPipeHelper(uri, "image/jpeg", null, mPicture, this);
+        }
+
+        @Override
+        public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType, Bundle opts,
+                                    byte[] picture) {
+            try {
+                FileOutputStream out = new FileOutputStream(output.getFileDescriptor());
+                try {
+                    out.write(picture);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                            String sortOrder) {
+            return null;
+        }
+
+        @Override
+        public String getType(Uri uri) {
+            return "image/jpeg";
+        }
+
+        @Override
+        public Uri insert(Uri uri, ContentValues values) {
+            return null;
+        }
+
+        @Override
+        public int delete(Uri uri, String selection, String[] selectionArgs) {
+            return 0;
+        }
+
+        @Override
+        public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+            return 0;
+        }
+    }
+
+    @Test
+    public void storesPicturesStreamedThroughAPipe() throws Exception {
+        Bitmap bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream picture = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.JPEG, 90, picture);
+
+        final MockContentResolver resolver = new MockContentResolver();
+        resolver.addProvider(AUTHORITY, new PipeProvider(picture.toByteArray()));
+        Context context = new ContextWrapper(InstrumentationRegistry.getTargetContext()) {
+            @Override
+            public ContentResolver getContentResolver() {
+                return resolver;
+            }
+        };
+
+        ContentValues values = ProductImages.store(context, PRODUCT_ID,
+                Uri.parse("content://" + AUTHORITY + "/picture.jpg"));
+        assertNotNull("Picture streamed through a pipe wasn't stored", values);
+        try {
+            File stored = ProductImages.getPictureFile(context,
+                    Uri.parse(values.getAsString(ProductEntry.COLUMN_PRODUCT_PICTURE)));
+            assertNotNull(stored);
+            assertTrue(Arrays.equals(picture.toByteArray(), read(stored)));
+        } finally {
+            ProductImages.deleteStored(context, values);
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -15,23 +15,47 @@
  */
 package com.example.android.inventoryapp;
 
+import android.app.AlertDialog;
 import android.app.LoaderManager;
+import android.content.AsyncQueryHandler;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.CursorLoader;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.Loader;
+import android.database.ContentObserver;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.design.widget.FloatingActionButton;
+import android.support.v4.view.MenuItemCompat;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.SearchView;
+import android.text.TextUtils;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
 import android.util.Log;
+import android.util.LongSparseArray;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
 import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+import com.example.android.inventoryapp.data.Product;
+import com.example.android.inventoryapp.data.ProductCursorReader;
+import com.example.android.inventoryapp.data.ProductExporter;
+import com.example.android.inventoryapp.data.ProductRepository;
+
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -40,15 +64,195 @@ import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
 public class CatalogActivity extends AppCompatActivity implements
         LoaderManager.LoaderCallbacks<Cursor> {
 
+    private static final String LOG_TAG = CatalogActivity.class.getSimpleName();
+
     /**
-     * Identifier for the product data loader
+     * Identifier for the product data loader of the first page. Page i is loaded by the loader
+     * with identifier PRODUCT_LOADER + i.
      */
     private static final int PRODUCT_LOADER = 0;
 
     /**
-     * Adapter for the ListView
+     * Request code of the picker of the CSV file to import
+     */
+    private static final int RESULT_IMPORT_DOCUMENT = 146;
+
+    /**
+     * MIME types of the CSV files offered for import
+     */
+    private static final String[] IMPORT_MIME_TYPES = {
+            "text/csv", "text/comma-separated-values", "text/plain"};
+
+    /**
+     * Request codes of the pickers of the file to export to, one per format
+     */
+    private static final int RESULT_EXPORT_CSV = 147;
+    private static final int RESULT_EXPORT_JSON = 148;
+
+    /**
+     * Number of products per page
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Number of products left below the last visible one under which the next page is loaded
+     */
+    private static final int PAGE_PRELOAD_THRESHOLD = PAGE_SIZE / 2;
+
+    /**
+     * Number of consecutive pages kept loaded around the visible rows. Pages scrolled past are
+     * released, with their loader, and loaded again when the user scrolls back to them.
+     */
+    private static final int WINDOW_PAGES = 5;
+
+    /**
+     * Projection that specifies the columns from the table the list shows
+     */
+    private static final String[] LIST_PROJECTION = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_PICTURE,
+            ProductEntry.COLUMN_PRODUCT_THUMBNAIL};
+
+    /**
+     * Projection of the suppliers offered by the supplier filter
+     */
+    private static final String[] SUPPLIER_PROJECTION = {
+            SupplierEntry._ID,
+            SupplierEntry.COLUMN_SUPPLIER_NAME};
+
+    /**
+     * Tokens of the queries of {@link #mProductQueryHandler}
+     */
+    private static final int TOKEN_PRODUCT = 0;
+    private static final int TOKEN_SUPPLIERS = 1;
+
+    /**
+     * Delay (in ms) the list waits for the sort order, filters and search text to stop changing
+     * before it reloads
+     */
+    private static final long RELOAD_DELAY_MS = 300;
+
+    /**
+     * Value of {@link #mMinQuantity} and {@link #mMaxQuantity} when the stock range is open
+     */
+    private static final int NO_QUANTITY_BOUND = -1;
+
+    /**
+     * Keys of the loader arguments holding the product a page starts after
+     */
+    private static final String ARG_AFTER_VALUE = "after_value";
+    private static final String ARG_AFTER_ID = "after_id";
+
+    /**
+     * Key of the saved instance state holding the arguments of every page after the first one
+     */
+    private static final String STATE_PAGE_ARGS = "page_args";
+
+    /**
+     * Keys of the saved instance state holding the first page and the number of pages loaded
+     */
+    private static final String STATE_FIRST_PAGE = "first_page";
+    private static final String STATE_PAGE_COUNT = "page_count";
+
+    /**
+     * Keys of the saved instance state holding the sort order and filters of the list
+     */
+    private static final String STATE_SORT_COLUMN = "sort_column";
+    private static final String STATE_SUPPLIER_ID = "supplier_id";
+    private static final String STATE_MIN_QUANTITY = "min_quantity";
+    private static final String STATE_MAX_QUANTITY = "max_quantity";
+
+    /**
+     * Adapter for the RecyclerView
+     */
+    ProductAdapter mProductAdapter;
+
+    /**
+     * Current text of the search box (null or empty to show all products)
      */
-    ProductCursorAdapter mCursorAdapter;
+    private String mSearchQuery;
+
+    /**
+     * Column the list is sorted by, see {@link ProductEntry#QUERY_PARAMETER_SORT}
+     */
+    private String mSortColumn = ProductEntry.COLUMN_PRODUCT_NAME;
+
+    /**
+     * Id of the supplier whose products are listed, 0 to list the products of every supplier
+     */
+    private long mSupplierId;
+
+    /**
+     * Bounds of the quantity of the listed products, or {@link #NO_QUANTITY_BOUND}
+     */
+    private int mMinQuantity = NO_QUANTITY_BOUND;
+    private int mMaxQuantity = NO_QUANTITY_BOUND;
+
+    /**
+     * Runs the reloads scheduled by {@link #scheduleReload()}
+     */
+    private final Handler mReloadHandler = new Handler();
+
+    /**
+     * Reloads the list from its first page
+     */
+    private final Runnable mReloadRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mReloadPending = false;
+            getLoaderManager().restartLoader(PRODUCT_LOADER, null, CatalogActivity.this);
+        }
+    };
+
+    /**
+     * Whether a reload is scheduled. The loaded pages are stale until it runs, so no page
+     * follows them.
+     */
+    private boolean mReloadPending;
+
+    /**
+     * Loader arguments of every page reached so far (null for the first page), so that pages
+     * released from the window can be loaded again. They only hold the product each page
+     * starts after.
+     */
+    private ArrayList<Bundle> mPageArgs = new ArrayList<>();
+
+    /**
+     * Number of the first page of the window of loaded pages
+     */
+    private int mFirstPage;
+
+    /**
+     * Products of the pages of the window, from {@link #mFirstPage} on (null until the page
+     * is loaded). At most {@link #WINDOW_PAGES} pages, each with its own loader.
+     */
+    private ArrayList<List<Product>> mPages = new ArrayList<>();
+
+    /**
+     * Latest values of the shown products updated since their page was loaded, by product id.
+     * They take precedence over the values of the pages, which aren't reloaded when
+     * a single product changes, until their page reloads or leaves the window.
+     */
+    private final LongSparseArray<Product> mUpdatedProducts = new LongSparseArray<>();
+
+    /**
+     * View shown instead of the list when there are no products
+     */
+    private View mEmptyView;
+
+    /**
+     * Reads the single products that changed, in the background
+     */
+    private AsyncQueryHandler mProductQueryHandler;
+
+    /**
+     * Observes changes of single products, to update their rows in place. The pages only reload
+     * when products are added, removed or renamed.
+     */
+    private ContentObserver mProductObserver;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -65,29 +269,25 @@ public class CatalogActivity extends AppCompatActivity implements
             }
         });
 
-        // Find the ListView which will be populated with the product data
-        ListView productListView = (ListView) findViewById(R.id.list);
-
-        // Find and set empty view on the ListView, so that it only shows when the list has 0 items.
-        View emptyView = findViewById(R.id.empty_view);
-        productListView.setEmptyView(emptyView);
+        // Find the RecyclerView which will be populated with the product data
+        RecyclerView productRecyclerView = (RecyclerView) findViewById(R.id.list);
+        final LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        productRecyclerView.setLayoutManager(layoutManager);
 
-        // Setup an Adapter to create a list item for each row of pet data in the Cursor.
-        // There is no pet data yet (until the loader finishes) so pass in null for the Cursor.
-        mCursorAdapter = new ProductCursorAdapter(this, null);
-        productListView.setAdapter(mCursorAdapter);
+        // Find the empty view, which only shows when the list has 0 items.
+        mEmptyView = findViewById(R.id.empty_view);
 
-        // Setup the item click listener
-        productListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Setup an Adapter to create a list item for each product, opening the editor
+        // when a product is clicked. There is no product data yet (until the loader finishes).
+        mProductAdapter = new ProductAdapter(this, new ProductAdapter.OnProductClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long id) {
+            public void onProductClick(Product product) {
                 // Create new intent to go to {@link EditorActivity}
                 Intent intent = new Intent(CatalogActivity.this, EditorActivity.class);
 
-                // Form the content URI that represents the specific pet that was clicked on,
-                // by appending the "id" (passed as input to this method) onto the
-                // {@link ProductEntry#CONTENT_URI}.
-                Uri currentProductUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id);
+                // Form the content URI that represents the specific product that was clicked on,
+                // by appending its id onto the {@link ProductEntry#CONTENT_URI}.
+                Uri currentProductUri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, product.id);
 
                 // Set the URI on the data field of the intent
                 intent.setData(currentProductUri);
@@ -96,9 +296,303 @@ public class CatalogActivity extends AppCompatActivity implements
                 startActivity(intent);
             }
         });
+        productRecyclerView.setAdapter(mProductAdapter);
+
+        // Load the pictures of the next rows ahead of the scroll position
+        addImagePreloader(productRecyclerView, mProductAdapter);
+
+        // Load the next or previous page when the user scrolls close to an end of the loaded ones
+        productRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy >= 0 && layoutManager.findLastVisibleItemPosition()
+                        >= mProductAdapter.getItemCount() - PAGE_PRELOAD_THRESHOLD) {
+                    loadNextPage();
+                } else if (dy < 0 && layoutManager.findFirstVisibleItemPosition() < PAGE_PRELOAD_THRESHOLD) {
+                    loadPreviousPage();
+                }
+            }
+        });
+
+        // Update the rows of single products in place when they change
+        mProductQueryHandler = new AsyncQueryHandler(getContentResolver()) {
+            @Override
+            protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
+                if (cursor == null) {
+                    return;
+                }
+                if (token == TOKEN_SUPPLIERS) {
+                    showSupplierDialog(cursor);
+                    return;
+                }
+                try {
+                    // A product that no longer exists is removed when the pages reload, and
+                    // one that isn't shown is read again with its page
+                    if (cursor.moveToFirst() && isShown((Long) cookie)) {
+                        mUpdatedProducts.put((Long) cookie, new ProductCursorReader(cursor).toProduct());
+                        showPages();
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        };
+        mProductObserver = new ContentObserver(new Handler()) {
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                if (uri == null || uri.equals(ProductEntry.CONTENT_URI)) {
+                    // Several products changed at once; all the pages reload
+                    mUpdatedProducts.clear();
+                } else if (uri.getPathSegments().size() == 2
+                        && TextUtils.isDigitsOnly(uri.getLastPathSegment())) {
+                    // A single product changed; read it again and rebind its row
+                    long id = ContentUris.parseId(uri);
+                    mProductQueryHandler.startQuery(TOKEN_PRODUCT, id, uri, LIST_PROJECTION, null, null, null);
+                }
+            }
+        };
+        getContentResolver().registerContentObserver(ProductEntry.CONTENT_URI, true, mProductObserver);
 
-        // Kick off the loader
-        getLoaderManager().initLoader(PRODUCT_LOADER, null, this);
+        // Kick off the loaders, for the first page or the window of pages that was loaded
+        // before the activity was recreated
+        mPageArgs.add(null);
+        int pageCount = 1;
+        if (savedInstanceState != null) {
+            mSortColumn = savedInstanceState.getString(STATE_SORT_COLUMN, mSortColumn);
+            mSupplierId = savedInstanceState.getLong(STATE_SUPPLIER_ID);
+            mMinQuantity = savedInstanceState.getInt(STATE_MIN_QUANTITY, NO_QUANTITY_BOUND);
+            mMaxQuantity = savedInstanceState.getInt(STATE_MAX_QUANTITY, NO_QUANTITY_BOUND);
+            ArrayList<Bundle> pageArgs = savedInstanceState.getParcelableArrayList(STATE_PAGE_ARGS);
+            if (pageArgs != null) {
+                mPageArgs.addAll(pageArgs);
+                mFirstPage = savedInstanceState.getInt(STATE_FIRST_PAGE);
+                pageCount = savedInstanceState.getInt(STATE_PAGE_COUNT, 1);
+            }
+        }
+        for (int page = mFirstPage; page < mFirstPage + pageCount; page++) {
+            mPages.add(null);
+            getLoaderManager().initLoader(PRODUCT_LOADER + page, mPageArgs.get(page), this);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        getContentResolver().unregisterContentObserver(mProductObserver);
+        mProductQueryHandler.cancelOperation(TOKEN_PRODUCT);
+        mProductQueryHandler.cancelOperation(TOKEN_SUPPLIERS);
+        mReloadHandler.removeCallbacks(mReloadRunnable);
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // The search text isn't restored, so neither are the pages of search results
+        if (TextUtils.isEmpty(mSearchQuery)) {
+            outState.putParcelableArrayList(STATE_PAGE_ARGS,
+                    new ArrayList<>(mPageArgs.subList(1, mPageArgs.size())));
+            outState.putInt(STATE_FIRST_PAGE, mFirstPage);
+            outState.putInt(STATE_PAGE_COUNT, mPages.size());
+        }
+        outState.putString(STATE_SORT_COLUMN, mSortColumn);
+        outState.putLong(STATE_SUPPLIER_ID, mSupplierId);
+        outState.putInt(STATE_MIN_QUANTITY, mMinQuantity);
+        outState.putInt(STATE_MAX_QUANTITY, mMaxQuantity);
+    }
+
+    /**
+     * Reload the list from its first page once the sort order, filters and search text have
+     * stopped changing for {@link #RELOAD_DELAY_MS}, so that quick successive changes only run
+     * the query of the last one.
+     */
+    private void scheduleReload() {
+        mReloadPending = true;
+        // The pages after the first one belong to the previous list
+        if (mFirstPage == 0) {
+            dropPagesAfter(0);
+        } else {
+            // The first page isn't loaded anymore; the list empties until it reloads
+            for (int i = 0; i < mPages.size(); i++) {
+                releasePage(i);
+                getLoaderManager().destroyLoader(PRODUCT_LOADER + mFirstPage + i);
+            }
+            mPages.clear();
+            mPages.add(null);
+            mFirstPage = 0;
+            mPageArgs.subList(1, mPageArgs.size()).clear();
+            showPages();
+        }
+        mReloadHandler.removeCallbacks(mReloadRunnable);
+        mReloadHandler.postDelayed(mReloadRunnable, RELOAD_DELAY_MS);
+    }
+
+    /**
+     * Return the value of the sort column of the given product, which pages start after.
+     * Pages of search results start after a name.
+     */
+    private String getSortValue(Product product) {
+        if (!TextUtils.isEmpty(mSearchQuery)) {
+            return product.name;
+        } else if (ProductEntry.COLUMN_PRODUCT_PRICE.equals(mSortColumn)) {
+            return String.valueOf(product.price);
+        } else if (ProductEntry.COLUMN_PRODUCT_QUANTITY.equals(mSortColumn)) {
+            return String.valueOf(product.quantity);
+        }
+        return product.name;
+    }
+
+    /**
+     * Start loading the page after the last loaded one, unless a page is already loading
+     * or the last page has been reached. Once the window holds {@link #WINDOW_PAGES} pages,
+     * its first page is released.
+     */
+    private void loadNextPage() {
+        // Stale pages are about to be replaced
+        if (mReloadPending) {
+            return;
+        }
+
+        // Wait until the pages are loaded, and stop once a page isn't full
+        if (mPages.isEmpty() || mPages.contains(null)) {
+            return;
+        }
+        List<Product> lastPage = mPages.get(mPages.size() - 1);
+        if (lastPage.size() < PAGE_SIZE) {
+            return;
+        }
+
+        // The next page starts right after the last product of the last page. If it used to
+        // start elsewhere, the pages reached after it have moved too.
+        int page = mFirstPage + mPages.size();
+        Product lastProduct = lastPage.get(lastPage.size() - 1);
+        Bundle args = new Bundle();
+        args.putString(ARG_AFTER_VALUE, getSortValue(lastProduct));
+        args.putLong(ARG_AFTER_ID, lastProduct.id);
+        if (page < mPageArgs.size() && !endsAt(lastPage, mPageArgs.get(page))) {
+            mPageArgs.subList(page, mPageArgs.size()).clear();
+        }
+        if (page == mPageArgs.size()) {
+            mPageArgs.add(args);
+        }
+
+        if (mPages.size() == WINDOW_PAGES) {
+            releasePage(0);
+            mPages.remove(0);
+            getLoaderManager().destroyLoader(PRODUCT_LOADER + mFirstPage);
+            mFirstPage++;
+            showPages();
+        }
+        mPages.add(null);
+        getLoaderManager().initLoader(PRODUCT_LOADER + page, args, this);
+    }
+
+    /**
+     * Start loading the page before the first loaded one, unless a page is already loading
+     * or the first page is loaded. Once the window holds {@link #WINDOW_PAGES} pages, its last
+     * page is released.
+     */
+    private void loadPreviousPage() {
+        if (mFirstPage == 0 || mReloadPending || mPages.contains(null)) {
+            return;
+        }
+
+        if (mPages.size() == WINDOW_PAGES) {
+            int lastPage = mPages.size() - 1;
+            releasePage(lastPage);
+            mPages.remove(lastPage);
+            getLoaderManager().destroyLoader(PRODUCT_LOADER + mFirstPage + lastPage);
+            showPages();
+        }
+        mFirstPage--;
+        mPages.add(0, null);
+        getLoaderManager().initLoader(PRODUCT_LOADER + mFirstPage, mPageArgs.get(mFirstPage), this);
+    }
+
+    /**
+     * Forget every page of the window after the given page of the window. They will be loaded
+     * again as the user scrolls.
+     */
+    private void dropPagesAfter(int page) {
+        int pageCount = mPages.size();
+        while (mPages.size() > page + 1) {
+            releasePage(mPages.size() - 1);
+            mPages.remove(mPages.size() - 1);
+        }
+        if (mPageArgs.size() > mFirstPage + page + 1) {
+            mPageArgs.subList(mFirstPage + page + 1, mPageArgs.size()).clear();
+        }
+
+        showPages();
+        for (int droppedPage = page + 1; droppedPage < pageCount; droppedPage++) {
+            getLoaderManager().destroyLoader(PRODUCT_LOADER + mFirstPage + droppedPage);
+        }
+    }
+
+    /**
+     * Forget the updated values of the products of the given page of the window, which is
+     * about to be reloaded or released.
+     */
+    private void releasePage(int page) {
+        List<Product> products = mPages.get(page);
+        if (products != null) {
+            for (Product product : products) {
+                mUpdatedProducts.remove(product.id);
+            }
+        }
+    }
+
+    /**
+     * Return true if the product with the given id is on a loaded page of the window.
+     */
+    private boolean isShown(long id) {
+        for (List<Product> page : mPages) {
+            if (page != null) {
+                for (Product product : page) {
+                    if (product.id == id) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Show the consecutive pages of the window loaded so far, from the first loaded one up to
+     * the next one that is still loading.
+     */
+    private void showPages() {
+        ArrayList<Product> products = new ArrayList<>();
+        for (List<Product> page : mPages) {
+            if (page == null) {
+                // Skip the previous page while it loads, stop at the next one
+                if (products.isEmpty()) {
+                    continue;
+                }
+                break;
+            }
+            for (Product product : page) {
+                Product updatedProduct = mUpdatedProducts.get(product.id);
+                products.add(updatedProduct != null ? updatedProduct : product);
+            }
+        }
+
+        mProductAdapter.submitList(products);
+        mEmptyView.setVisibility(products.isEmpty() ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Return true if the given page still ends right before the product the next page
+     * starts after, i.e. no product was added, removed or changed its sort value across the page
+     * boundary.
+     */
+    private boolean endsAt(List<Product> page, Bundle nextPageArgs) {
+        if (page.size() < PAGE_SIZE) {
+            return false;
+        }
+        Product lastProduct = page.get(page.size() - 1);
+        return lastProduct.id == nextPageArgs.getLong(ARG_AFTER_ID)
+                && TextUtils.equals(getSortValue(lastProduct), nextPageArgs.getString(ARG_AFTER_VALUE));
     }
 
 
@@ -115,41 +609,292 @@ public class CatalogActivity extends AppCompatActivity implements
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER, "Acme");
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL, "acme@acme.com");
 
-        getContentResolver().insert(ProductEntry.CONTENT_URI, values);
+        ProductRepository.getInstance(this).insert(values, null);
     }
 
 
 
+    /**
+     * Load the pictures of the next rows of the given product list ahead of the scroll position,
+     * at the size of the ImageView of the rows, with the requests of the given model provider.
+     */
+    static void addImagePreloader(RecyclerView recyclerView, ListPreloader.PreloadModelProvider<Product> modelProvider) {
+        int pictureSize = recyclerView.getResources().getDimensionPixelSize(R.dimen.list_item_height);
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<>(Glide.with(recyclerView.getContext()),
+                modelProvider, new FixedPreloadSizeProvider<Product>(pictureSize, pictureSize),
+                recyclerView.getResources().getInteger(R.integer.catalog_image_preload_rows)));
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        // Inflate the menu options from the res/menu/menu_catalog.xml file.
+        // This adds menu items to the app bar.
+        getMenuInflater().inflate(R.menu.menu_catalog, menu);
+
+        // Reload the list every time the search text changes
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(menu.findItem(R.id.action_search));
+        searchView.setQueryHint(getString(R.string.hint_search));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                if (TextUtils.equals(mSearchQuery, newText)) {
+                    return true;
+                }
+                mSearchQuery = newText;
+                // Start over from the first page, once the user stops typing
+                scheduleReload();
+                return true;
+            }
+        });
+
+        // Check the current sort order and stock range
+        if (ProductEntry.COLUMN_PRODUCT_PRICE.equals(mSortColumn)) {
+            menu.findItem(R.id.action_sort_price).setChecked(true);
+        } else if (ProductEntry.COLUMN_PRODUCT_QUANTITY.equals(mSortColumn)) {
+            menu.findItem(R.id.action_sort_quantity).setChecked(true);
+        } else {
+            menu.findItem(R.id.action_sort_name).setChecked(true);
+        }
+        if (mMaxQuantity == ProductEntry.MINIMUM_QUANTITY) {
+            menu.findItem(R.id.action_stock_out).setChecked(true);
+        } else if (mMinQuantity == ProductEntry.MINIMUM_QUANTITY + 1) {
+            menu.findItem(R.id.action_stock_in).setChecked(true);
+        } else {
+            menu.findItem(R.id.action_stock_any).setChecked(true);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+            // Respond to a click on the sort orders
+            case R.id.action_sort_name:
+                setSortColumn(item, ProductEntry.COLUMN_PRODUCT_NAME);
+                return true;
+            case R.id.action_sort_price:
+                setSortColumn(item, ProductEntry.COLUMN_PRODUCT_PRICE);
+                return true;
+            case R.id.action_sort_quantity:
+                setSortColumn(item, ProductEntry.COLUMN_PRODUCT_QUANTITY);
+                return true;
+            // Respond to a click on the stock ranges
+            case R.id.action_stock_any:
+                setStockRange(item, NO_QUANTITY_BOUND, NO_QUANTITY_BOUND);
+                return true;
+            case R.id.action_stock_out:
+                setStockRange(item, NO_QUANTITY_BOUND, ProductEntry.MINIMUM_QUANTITY);
+                return true;
+            case R.id.action_stock_in:
+                setStockRange(item, ProductEntry.MINIMUM_QUANTITY + 1, NO_QUANTITY_BOUND);
+                return true;
+            // Respond to a click on the "Supplier" menu option, which lists the suppliers first
+            case R.id.action_filter_supplier:
+                mProductQueryHandler.cancelOperation(TOKEN_SUPPLIERS);
+                mProductQueryHandler.startQuery(TOKEN_SUPPLIERS, null, SupplierEntry.CONTENT_URI,
+                        SUPPLIER_PROJECTION, null, null, SupplierEntry.COLUMN_SUPPLIER_NAME);
+                return true;
+            // Respond to a click on the "Import" menu option
+            case R.id.action_import:
+                Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType("*/*");
+                intent.putExtra(Intent.EXTRA_MIME_TYPES, IMPORT_MIME_TYPES);
+                startActivityForResult(intent, RESULT_IMPORT_DOCUMENT);
+                return true;
+            // Respond to a click on the "Export as CSV" menu option
+            case R.id.action_export_csv:
+                pickExportDocument(ProductExporter.MIME_TYPE_CSV, ".csv", RESULT_EXPORT_CSV);
+                return true;
+            // Respond to a click on the "Export as JSON" menu option
+            case R.id.action_export_json:
+                pickExportDocument(ProductExporter.MIME_TYPE_JSON, ".json", RESULT_EXPORT_JSON);
+                return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+        if (requestCode == RESULT_IMPORT_DOCUMENT && resultCode == RESULT_OK && data != null
+                && data.getData() != null) {
+            Uri document = data.getData();
+            // Keep the permission to read the file, so that an interrupted import can resume
+            // after the app restarted
+            try {
+                getContentResolver().takePersistableUriPermission(document,
+                        Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            } catch (SecurityException e) {
+                Log.w(LOG_TAG, "No persistable permission for " + document, e);
+            }
+            ProductImportService.start(this, document);
+        } else if ((requestCode == RESULT_EXPORT_CSV || requestCode == RESULT_EXPORT_JSON)
+                && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            ProductExportService.start(this, data.getData(), requestCode == RESULT_EXPORT_JSON
+                    ? ProductExporter.FORMAT_JSON : ProductExporter.FORMAT_CSV);
+        }
+    }
+
+    /**
+     * Sort the list by the given column, from the given menu item.
+     */
+    private void setSortColumn(MenuItem item, String sortColumn) {
+        item.setChecked(true);
+        if (!sortColumn.equals(mSortColumn)) {
+            mSortColumn = sortColumn;
+            scheduleReload();
+        }
+    }
+
+    /**
+     * Only list the products whose quantity is within the given bounds, from the given menu item.
+     */
+    private void setStockRange(MenuItem item, int minQuantity, int maxQuantity) {
+        item.setChecked(true);
+        if (minQuantity != mMinQuantity || maxQuantity != mMaxQuantity) {
+            mMinQuantity = minQuantity;
+            mMaxQuantity = maxQuantity;
+            scheduleReload();
+        }
+    }
+
+    /**
+     * Let the user pick the supplier whose products are listed, among the suppliers of the given
+     * cursor, or all of them.
+     */
+    private void showSupplierDialog(Cursor cursor) {
+        final long[] ids = new long[cursor.getCount() + 1];
+        String[] names = new String[ids.length];
+        int checkedItem = 0;
+        try {
+            names[0] = getString(R.string.all_suppliers);
+            for (int i = 1; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(0);
+                names[i] = cursor.getString(1);
+                if (ids[i] == mSupplierId) {
+                    checkedItem = i;
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        if (isFinishing()) {
+            return;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_filter_supplier)
+                .setSingleChoiceItems(names, checkedItem, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                        if (ids[which] != mSupplierId) {
+                            mSupplierId = ids[which];
+                            scheduleReload();
+                        }
+                    }
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Let the user create the document to export the catalog to.
+     */
+    private void pickExportDocument(String mimeType, String extension, int requestCode) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(mimeType);
+        intent.putExtra(Intent.EXTRA_TITLE, getString(R.string.export_file_name) + extension);
+        startActivityForResult(intent, requestCode);
+    }
+
     @Override
     public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        // Define a projection that specifies the columns from the table we care about.
-        String[] projection = {
-                ProductEntry._ID,
-                ProductEntry.COLUMN_PRODUCT_NAME,
-                ProductEntry.COLUMN_PRODUCT_PRICE,
-                ProductEntry.COLUMN_PRODUCT_QUANTITY,
-                ProductEntry.COLUMN_PRODUCT_PICTURE,
-                ProductEntry.COLUMN_PRODUCT_SUPPLIER,
-                ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL};
+        // Search the products if there is a search text, a page at a time in the order of the
+        // results
+        if (!TextUtils.isEmpty(mSearchQuery)) {
+            Uri uri;
+            if (bundle == null) {
+                uri = ProductEntry.buildSearchUri(mSearchQuery, PAGE_SIZE, null, 0);
+            } else {
+                uri = ProductEntry.buildSearchUri(mSearchQuery, PAGE_SIZE, bundle.getString(ARG_AFTER_VALUE),
+                        bundle.getLong(ARG_AFTER_ID));
+            }
+            return new CursorLoader(this, uri, LIST_PROJECTION, null, null, null);
+        }
+
+        // Otherwise list a page of the products that pass the filters, in the sort order.
+        // The filters and the sort column are indexed, alone and after the supplier.
+        Uri uri;
+        if (bundle == null) {
+            uri = ProductEntry.buildPageUri(PAGE_SIZE, mSortColumn, null, 0);
+        } else {
+            uri = ProductEntry.buildPageUri(PAGE_SIZE, mSortColumn, bundle.getString(ARG_AFTER_VALUE),
+                    bundle.getLong(ARG_AFTER_ID));
+        }
+        String selection = null;
+        List<String> selectionArgs = new ArrayList<>();
+        if (mSupplierId != 0) {
+            selection = DatabaseUtils.concatenateWhere(selection, ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + "=?");
+            selectionArgs.add(String.valueOf(mSupplierId));
+        }
+        String quantity = ProductEntry.getPageRangeOperand(mSortColumn, ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        if (mMinQuantity != NO_QUANTITY_BOUND) {
+            selection = DatabaseUtils.concatenateWhere(selection, quantity + ">=?");
+            selectionArgs.add(String.valueOf(mMinQuantity));
+        }
+        if (mMaxQuantity != NO_QUANTITY_BOUND) {
+            selection = DatabaseUtils.concatenateWhere(selection, quantity + "<=?");
+            selectionArgs.add(String.valueOf(mMaxQuantity));
+        }
 
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,   // Parent activity context
-                ProductEntry.CONTENT_URI,   // Provider content URI to query
-                projection,             // Columns to include in the resulting Cursor
-                null,                   // No selection clause
-                null,                   // No selection arguments
-                null);                  // Default sort order
+                uri,                    // Provider content URI to query
+                LIST_PROJECTION,        // Columns to include in the resulting Cursor
+                selection,              // Filters of the list
+                selectionArgs.toArray(new String[selectionArgs.size()]),
+                ProductEntry.getPageSortOrder(mSortColumn));
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        // Update {@link PetCursorAdapter} with this new cursor containing updated pet data
-        mCursorAdapter.swapCursor(data);
+        // Ignore pages that have left the window
+        int page = loader.getId() - PRODUCT_LOADER - mFirstPage;
+        if (page < 0 || page >= mPages.size()) {
+            return;
+        }
+
+        // Read the products of the page; lists and search results are both loaded a page of
+        // at most PAGE_SIZE products at a time, so this is quick
+        List<Product> products = new ArrayList<>(data.getCount());
+        ProductCursorReader reader = new ProductCursorReader(data);
+        data.moveToPosition(-1);
+        while (data.moveToNext()) {
+            products.add(reader.toProduct());
+        }
+        // The page holds the latest values of its products
+        releasePage(page);
+        mPages.set(page, products);
+
+        // If the following pages don't start where this one ends anymore, drop them
+        if (page + 1 < mPages.size() && !endsAt(products, mPageArgs.get(mFirstPage + page + 1))) {
+            dropPagesAfter(page);
+        }
+
+        // Update {@link ProductAdapter} with the pages containing updated product data
+        showPages();
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
-        // Callback called when the data needs to be deleted
-        mCursorAdapter.swapCursor(null);
+        // The products were already copied out of the cursor, so there is nothing to release
     }
 }
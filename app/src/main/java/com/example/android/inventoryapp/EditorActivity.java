@@ -3,6 +3,7 @@ package com.example.android.inventoryapp;
 import android.app.AlertDialog;
 import android.app.LoaderManager;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.CursorLoader;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -27,6 +28,8 @@ import android.widget.Toast;
 
 import com.bumptech.glide.Glide;
 import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.ProductCursorReader;
+import com.example.android.inventoryapp.data.ProductRepository;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -95,6 +98,12 @@ public class EditorActivity extends AppCompatActivity implements
     @BindView(R.id.edit_product_supplier_mail)
     EditText productSupplierMailEditText;
 
+    /**
+     * EditText field to enter the quantity at which the product needs to be reordered
+     */
+    @BindView(R.id.edit_product_reorder_threshold)
+    EditText productReorderThresholdEditText;
+
     /**
      * Temporarily store the supplier mail
      */
@@ -157,6 +166,7 @@ public class EditorActivity extends AppCompatActivity implements
         productPriceEditText.setOnTouchListener(mTouchListener);
         productSupplierEditText.setOnTouchListener(mTouchListener);
         productSupplierMailEditText.setOnTouchListener(mTouchListener);
+        productReorderThresholdEditText.setOnTouchListener(mTouchListener);
 
         quantityDecrementButton.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -244,44 +254,56 @@ public class EditorActivity extends AppCompatActivity implements
         values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, quantityString);
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER, supplierString);
         values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL, supplierMailString);
+        // The reorder threshold is optional
+        String reorderThresholdString = productReorderThresholdEditText.getText().toString().trim();
+        values.put(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+                reorderThresholdString.isEmpty() ? "0" : reorderThresholdString);
         //Check if there is a new image
         Uri uri = (Uri) productPictureImageView.getTag(R.string.TAG_KEY_IMAGE_URI);
         if (uri != null)
             values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, uri.toString());
 
+        // The result arrives after this activity has finished, so report it with the app context
+        final Context appContext = getApplicationContext();
+
         // Determine if this is a new or existing product by checking if mCurrentproductUri is null or not
         if (mCurrentProductUri == null) {
-            // This is a NEW product, so insert a new product into the provider,
-            // returning the content URI for the new product.
-            Uri newUri = getContentResolver().insert(ProductEntry.CONTENT_URI, values);
-
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, getString(R.string.editor_activity_insert_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_activity_insert_product_successfull),
-                        Toast.LENGTH_SHORT).show();
-            }
+            // This is a NEW product, so insert a new product into the provider in the background,
+            // receiving the content URI for the new product.
+            ProductRepository.getInstance(this).insert(values, new ProductRepository.Callback<Uri>() {
+                @Override
+                public void onResult(Uri newUri) {
+                    // Show a toast message depending on whether or not the insertion was successful.
+                    if (newUri == null) {
+                        // If the new content URI is null, then there was an error with insertion.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_activity_insert_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the insertion was successful and we can display a toast.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_activity_insert_product_successfull),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         } else {
             // Otherwise this is an EXISTING product, so update the product with content URI: mCurrentProductUri
-            // and pass in the new ContentValues. Pass in null for the selection and selection args
-            // because mCurrentProductUri will already identify the correct row in the database that
-            // we want to modify.
-            int rowsAffected = getContentResolver().update(mCurrentProductUri, values, null, null);
-
-            // Show a toast message depending on whether or not the update was successful.
-            if (rowsAffected == 0) {
-                // If no rows were affected, then there was an error with the update.
-                Toast.makeText(this, getString(R.string.editor_activity_update_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the update was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_activity_update_product_successfull),
-                        Toast.LENGTH_SHORT).show();
-            }
+            // and pass in the new ContentValues. mCurrentProductUri already identifies the correct
+            // row in the database that we want to modify.
+            ProductRepository.getInstance(this).update(mCurrentProductUri, values, new ProductRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer rowsAffected) {
+                    // Show a toast message depending on whether or not the update was successful.
+                    if (rowsAffected == 0) {
+                        // If no rows were affected, then there was an error with the update.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_activity_update_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the update was successful and we can display a toast.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_activity_update_product_successfull),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
         return true;
     }
@@ -396,8 +418,10 @@ public class EditorActivity extends AppCompatActivity implements
                 ProductEntry.COLUMN_PRODUCT_PRICE,
                 ProductEntry.COLUMN_PRODUCT_QUANTITY,
                 ProductEntry.COLUMN_PRODUCT_PICTURE,
+                ProductEntry.COLUMN_PRODUCT_PREVIEW,
                 ProductEntry.COLUMN_PRODUCT_SUPPLIER,
-                ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL};
+                ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL,
+                ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD};
 
         // This loader will execute the ContentProvider's query method on a background thread
         return new CursorLoader(this,   // Parent activity context
@@ -418,21 +442,16 @@ public class EditorActivity extends AppCompatActivity implements
         // Proceed with moving to the first row of the cursor and reading data from it
         // (This should be the only row in the cursor)
         if (cursor.moveToFirst()) {
-            // Find the columns of product attributes that we're interested in
-            int nameColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_NAME);
-            int priceColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PRICE);
-            int quantityColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY);
-            int pictureColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PICTURE);
-            int supplierColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_SUPPLIER);
-            int supplierMailColumnIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL);
-
             // Read the product attributes from the Cursor for the current product
-            String productName = cursor.getString(nameColumnIndex);
-            int productPrice = cursor.getInt(priceColumnIndex);
-            int productQuantity = cursor.getInt(quantityColumnIndex);
-            String productSupplier = cursor.getString(supplierColumnIndex);
-            String productSupplierMail = cursor.getString(supplierMailColumnIndex);
-            String productPicture = cursor.getString(pictureColumnIndex);
+            ProductCursorReader reader = new ProductCursorReader(cursor);
+            String productName = reader.getName();
+            int productPrice = reader.getPrice();
+            int productQuantity = reader.getQuantity();
+            String productSupplier = reader.getSupplier();
+            String productSupplierMail = reader.getSupplierMail();
+            int productReorderThreshold = reader.getReorderThreshold();
+            // Show the preview rather than the full-resolution picture once it's been generated
+            String productPicture = reader.getPreview() != null ? reader.getPreview() : reader.getPicture();
             mSupplierMail = productSupplierMail;
 
             // Update the views on the screen with the values from the database
@@ -441,6 +460,7 @@ public class EditorActivity extends AppCompatActivity implements
             productQuantityTextView.setText(String.valueOf(productQuantity));
             productSupplierEditText.setText(productSupplier);
             productSupplierMailEditText.setText(productSupplierMail);
+            productReorderThresholdEditText.setText(String.valueOf(productReorderThreshold));
             if (productPicture != null && !productPicture.isEmpty())
                 Glide
                         .with(this)
@@ -458,6 +478,7 @@ public class EditorActivity extends AppCompatActivity implements
         productQuantityTextView.setText(String.valueOf(MINIMUM_QUANTITY));
         productSupplierEditText.setText("");
         productSupplierMailEditText.setText("");
+        productReorderThresholdEditText.setText("");
     }
 
     /**
@@ -524,21 +545,24 @@ public class EditorActivity extends AppCompatActivity implements
     private void deleteProduct() {
         // Only perform the delete if this is an existing product.
         if (mCurrentProductUri != null) {
-            // Call the ContentResolver to delete the product at the given content URI.
-            // Pass in null for the selection and selection args because the mCurrentproductUri
-            // content URI already identifies the product that we want.
-            int rowsDeleted = getContentResolver().delete(mCurrentProductUri, null, null);
-
-            // Show a toast message depending on whether or not the delete was successful.
-            if (rowsDeleted == 0) {
-                // If no rows were deleted, then there was an error with the delete.
-                Toast.makeText(this, getString(R.string.editor_activity_delete_product_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_activity_delete_product_successfull),
-                        Toast.LENGTH_SHORT).show();
-            }
+            // Delete the product at the given content URI in the background. The result arrives
+            // after this activity has finished, so report it with the app context.
+            final Context appContext = getApplicationContext();
+            ProductRepository.getInstance(this).delete(mCurrentProductUri, new ProductRepository.Callback<Integer>() {
+                @Override
+                public void onResult(Integer rowsDeleted) {
+                    // Show a toast message depending on whether or not the delete was successful.
+                    if (rowsDeleted == 0) {
+                        // If no rows were deleted, then there was an error with the delete.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_activity_delete_product_failed),
+                                Toast.LENGTH_SHORT).show();
+                    } else {
+                        // Otherwise, the delete was successful and we can display a toast.
+                        Toast.makeText(appContext, appContext.getString(R.string.editor_activity_delete_product_successfull),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
         }
 
         // Close the activity
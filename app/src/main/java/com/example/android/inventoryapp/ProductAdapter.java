@@ -0,0 +1,267 @@
+package com.example.android.inventoryapp;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.request.RequestOptions;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.Product;
+import com.example.android.inventoryapp.data.ProductRepository;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import butterknife.BindView;
+import butterknife.ButterKnife;
+
+/**
+ * {@link ProductAdapter} is an adapter for a {@link RecyclerView} that shows a list of
+ * {@link Product}s. New lists are compared to the current one on a background thread, so only
+ * the rows of the products that actually changed are rebound. It also provides the pictures of
+ * the products to a {@link ListPreloader}, which loads them ahead of the scroll position.
+ */
+public class ProductAdapter extends RecyclerView.Adapter<ProductAdapter.ViewHolder>
+        implements ListPreloader.PreloadModelProvider<Product> {
+
+    /**
+     * Receives clicks on the products of the list.
+     */
+    public interface OnProductClickListener {
+        void onProductClick(Product product);
+    }
+
+    /**
+     * Executor computing the differences between lists, shared by all the adapters
+     */
+    private static final Executor sDiffExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context mContext;
+
+    private final OnProductClickListener mOnProductClickListener;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Products currently shown
+     */
+    private List<Product> mProducts = Collections.emptyList();
+
+    /**
+     * Number of lists submitted so far, so that the differences computed for a list that was
+     * replaced in the meantime are dropped
+     */
+    private int mGeneration;
+
+    /**
+     * Constructs a new {@link ProductAdapter}.
+     *
+     * @param context                The context
+     * @param onProductClickListener Listener of the clicks on the products
+     */
+    public ProductAdapter(Context context, OnProductClickListener onProductClickListener) {
+        mContext = context;
+        mOnProductClickListener = onProductClickListener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Show the given list of products. It is compared to the current list on a background
+     * thread, products being identified by their id, and the changes are applied once the
+     * comparison is done. The list must not be modified afterwards.
+     */
+    public void submitList(final List<Product> products) {
+        final int generation = ++mGeneration;
+        final List<Product> oldProducts = mProducts;
+
+        // Nothing to compare when the list is emptied or filled for the first time
+        if (oldProducts.isEmpty() || products.isEmpty()) {
+            mProducts = products;
+            notifyDataSetChanged();
+            return;
+        }
+
+        sDiffExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                    @Override
+                    public int getOldListSize() {
+                        return oldProducts.size();
+                    }
+
+                    @Override
+                    public int getNewListSize() {
+                        return products.size();
+                    }
+
+                    @Override
+                    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                        return oldProducts.get(oldItemPosition).id == products.get(newItemPosition).id;
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                        return oldProducts.get(oldItemPosition).equals(products.get(newItemPosition));
+                    }
+                });
+
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) {
+                            mProducts = products;
+                            result.dispatchUpdatesTo(ProductAdapter.this);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Return the products currently shown.
+     */
+    public List<Product> getProducts() {
+        return mProducts;
+    }
+
+    @Override
+    public int getItemCount() {
+        return mProducts.size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mProducts.get(position).id;
+    }
+
+    @Override
+    public List<Product> getPreloadItems(int position) {
+        Product product = mProducts.get(position);
+        String listImage = product.getListImage();
+        if (listImage == null || listImage.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(product);
+    }
+
+    @Override
+    public RequestBuilder<Drawable> getPreloadRequestBuilder(Product product) {
+        return buildImageRequest(product.getListImage());
+    }
+
+    /**
+     * Build the request loading the given list image. Rows and the preloader share it, so that
+     * the preloaded pictures are found in the memory cache when their rows are bound.
+     */
+    private RequestBuilder<Drawable> buildImageRequest(String listImage) {
+        // The transformation is explicit, as the one Glide picks from the scale type of the
+        // ImageView would not be applied to the preloaded pictures
+        return Glide
+                .with(mContext)
+                .load(Uri.parse(listImage))
+                .apply(RequestOptions.centerCropTransform(mContext));
+    }
+
+    /**
+     * Makes a new blank list item view. No data is set (or bound) to the views yet.
+     */
+    @Override
+    public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        // Inflate a list item view using the layout specified in list_item.xml
+        View view = LayoutInflater.from(mContext).inflate(R.layout.list_item, parent, false);
+        return new ViewHolder(view);
+    }
+
+    /**
+     * This method binds the product data at the given position to the given list item.
+     */
+    @Override
+    public void onBindViewHolder(final ViewHolder holder, int position) {
+        final Product product = mProducts.get(position);
+
+        // Update the TextViews with the attributes for the current product
+        holder.productNameTextView.setText(product.name);
+        holder.productPriceTextView.setText(ProductEntry.PRODUCT_PRICE_CURRENCY + " " + String.valueOf(product.price));
+        // Show the quantity the product will have once the sales still being written are
+        // committed
+        final ProductRepository repository = ProductRepository.getInstance(mContext);
+        holder.productQuantityTextView.setText(String.valueOf(product.quantity - repository.getUnwrittenSales(product.id)));
+        String listImage = product.getListImage();
+        if (listImage != null && !listImage.isEmpty())
+            buildImageRequest(listImage).into(holder.productPictureImageView);
+        else
+            holder.productPictureImageView.setImageResource(R.drawable.default_product_image);
+
+        // Setup onClickListener for the whole item
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                mOnProductClickListener.onProductClick(product);
+            }
+        });
+
+        // Setup onClickListener for the Sale Button
+        holder.productSaleButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                int quantity = product.quantity - repository.getUnwrittenSales(product.id);
+                if (quantity <= ProductEntry.MINIMUM_QUANTITY) {
+                    Toast.makeText(mContext, mContext.getString(R.string.toast_minimum_quantity_reached), Toast.LENGTH_SHORT).show();
+                    return;
+                }
+
+                /* Show the sale right away; it is written together with the other sales made
+                 * within a short window, and the provider checks the stock atomically */
+                holder.productQuantityTextView.setText(String.valueOf(quantity - 1));
+                final Context appContext = mContext.getApplicationContext();
+                repository.sellCoalesced(product.id, new ProductRepository.Callback<Integer>() {
+                    @Override
+                    public void onResult(Integer newQuantity) {
+                        // Only a failed sale is worth a toast, as sales come in bursts
+                        if (newQuantity == ProductEntry.SELL_FAILED) {
+                            // If the sale failed, the stock ran out since this row was loaded.
+                            Toast.makeText(appContext, appContext.getString(R.string.toast_minimum_quantity_reached),
+                                    Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        @BindView(R.id.product_name)
+        TextView productNameTextView;
+        @BindView(R.id.product_price)
+        TextView productPriceTextView;
+        @BindView(R.id.product_quantity)
+        TextView productQuantityTextView;
+        @BindView(R.id.product_picture)
+        ImageView productPictureImageView;
+        @BindView(R.id.product_button_sale)
+        Button productSaleButton;
+
+        public ViewHolder(View view) {
+            super(view);
+            ButterKnife.bind(this, view);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.android.inventoryapp;
+
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+import android.provider.DocumentsContract;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.ProductExporter;
+
+import java.io.IOException;
+
+/**
+ * Exports the catalog to documents in the background with {@link ProductExporter}, showing its
+ * progress in a notification with an action canceling it. Exports run one at a time.
+ */
+public class ProductExportService extends IntentService {
+
+    public static final String LOG_TAG = ProductExportService.class.getSimpleName();
+
+    /**
+     * Action canceling the export in progress
+     */
+    private static final String ACTION_CANCEL = "com.example.android.inventoryapp.action.CANCEL_EXPORT";
+
+    /**
+     * Extra holding the {@link ProductExporter} format of the document
+     */
+    private static final String EXTRA_FORMAT = "format";
+
+    /**
+     * Identifier of the export notification. Low stock alerts use the (positive) product ids,
+     * imports use -1.
+     */
+    private static final int NOTIFICATION_ID = -2;
+
+    /**
+     * Cancels the export in progress, null between exports
+     */
+    private volatile CancellationSignal mCancellationSignal;
+
+    /**
+     * Export the catalog to the given document, in the given {@link ProductExporter} format,
+     * in the background. The app must be allowed to write the document.
+     */
+    public static void start(Context context, Uri document, int format) {
+        Intent intent = new Intent(context, ProductExportService.class);
+        intent.setData(document);
+        intent.putExtra(EXTRA_FORMAT, format);
+        intent.addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+        context.startService(intent);
+    }
+
+    public ProductExportService() {
+        super(LOG_TAG);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Cancel right away rather than after the export, like the other intents would be
+        if (intent != null && ACTION_CANCEL.equals(intent.getAction())) {
+            CancellationSignal signal = mCancellationSignal;
+            if (signal != null) {
+                signal.cancel();
+            }
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        Uri document = intent.getData();
+        if (ACTION_CANCEL.equals(intent.getAction()) || document == null) {
+            return;
+        }
+        int format = intent.getIntExtra(EXTRA_FORMAT, ProductExporter.FORMAT_CSV);
+        CancellationSignal signal = new CancellationSignal();
+        mCancellationSignal = signal;
+
+        Intent cancelIntent = new Intent(this, ProductExportService.class).setAction(ACTION_CANCEL);
+        final NotificationCompat.Builder builder = new NotificationCompat.Builder(this)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.notification_export_title))
+                .setContentIntent(getCatalogIntent())
+                .addAction(0, getString(R.string.cancel), PendingIntent.getService(this, 0,
+                        cancelIntent, PendingIntent.FLAG_UPDATE_CURRENT))
+                .setOngoing(true)
+                .setProgress(0, 0, true);
+        startForeground(NOTIFICATION_ID, builder.build());
+
+        final NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
+        String text;
+        try {
+            int exported = ProductExporter.exportProducts(this, document, format, signal,
+                    new ProductExporter.ProgressListener() {
+                        @Override
+                        public void onProgress(int exported, int total) {
+                            builder.setProgress(total, exported, false)
+                                    .setContentText(getString(R.string.notification_export_text, exported, total));
+                            notificationManager.notify(NOTIFICATION_ID, builder.build());
+                        }
+                    });
+            text = getString(R.string.notification_export_done_text, exported);
+        } catch (OperationCanceledException e) {
+            deleteDocument(document);
+            text = getString(R.string.notification_export_canceled);
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Failed to export to " + document, e);
+            deleteDocument(document);
+            text = getString(R.string.notification_export_failed);
+        } finally {
+            mCancellationSignal = null;
+        }
+
+        // Replace the progress with the outcome of the export
+        stopForeground(true);
+        notificationManager.notify(NOTIFICATION_ID, new NotificationCompat.Builder(this)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.notification_export_done_title))
+                .setContentText(text)
+                .setContentIntent(getCatalogIntent())
+                .setAutoCancel(true)
+                .build());
+    }
+
+    private PendingIntent getCatalogIntent() {
+        return PendingIntent.getActivity(this, 0, new Intent(this, CatalogActivity.class),
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    /**
+     * Delete the incomplete document of a failed export, so it can't be mistaken for a full one.
+     */
+    private void deleteDocument(Uri document) {
+        try {
+            if (!DocumentsContract.deleteDocument(getContentResolver(), document)) {
+                Log.w(LOG_TAG, "Failed to delete " + document);
+            }
+        } catch (RuntimeException e) {
+            Log.w(LOG_TAG, "Failed to delete " + document, e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.android.inventoryapp;
+
+import android.app.IntentService;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.ProductImporter;
+
+import java.io.IOException;
+
+/**
+ * Imports products from CSV documents in the background with {@link ProductImporter}, showing
+ * its progress in a notification. Imports run one at a time. If the process dies during an
+ * import, the system restarts the service, which resumes the import after its last chunk.
+ */
+public class ProductImportService extends IntentService {
+
+    public static final String LOG_TAG = ProductImportService.class.getSimpleName();
+
+    /**
+     * Identifier of the import notification. Low stock alerts use the (positive) product ids.
+     */
+    private static final int NOTIFICATION_ID = -1;
+
+    /**
+     * Progress bar resolution of the notification
+     */
+    private static final int PROGRESS_MAX = 100;
+
+    /**
+     * Import the products of the given CSV document in the background. The app must be allowed
+     * to read the document, persistently for the import to resume after the process died.
+     */
+    public static void start(Context context, Uri document) {
+        Intent intent = new Intent(context, ProductImportService.class);
+        intent.setData(document);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        context.startService(intent);
+    }
+
+    public ProductImportService() {
+        super(LOG_TAG);
+        // Get the import started again if the process dies before it's done
+        setIntentRedelivery(true);
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        Uri document = intent.getData();
+        if (document == null) {
+            return;
+        }
+
+        final NotificationCompat.Builder builder = new NotificationCompat.Builder(this)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(getString(R.string.notification_import_title))
+                .setContentIntent(getCatalogIntent())
+                .setOngoing(true)
+                .setProgress(PROGRESS_MAX, 0, true);
+        startForeground(NOTIFICATION_ID, builder.build());
+
+        final NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
+        String text;
+        try {
+            ProductImporter.Result result = ProductImporter.importProducts(this, document,
+                    new ProductImporter.ProgressListener() {
+                        @Override
+                        public void onProgress(long bytesRead, long totalBytes, int imported, int rejected) {
+                            if (totalBytes > 0) {
+                                builder.setProgress(PROGRESS_MAX, (int) (PROGRESS_MAX * bytesRead / totalBytes), false);
+                            }
+                            builder.setContentText(getString(R.string.notification_import_text, imported, rejected));
+                            notificationManager.notify(NOTIFICATION_ID, builder.build());
+                        }
+                    });
+            text = getString(R.string.notification_import_text, result.imported, result.rejected);
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Failed to import " + document, e);
+            text = getString(R.string.notification_import_failed);
+        }
+
+        // Replace the progress with the outcome of the import
+        stopForeground(true);
+        builder.setContentTitle(getString(R.string.notification_import_done_title))
+                .setContentText(text)
+                .setOngoing(false)
+                .setAutoCancel(true)
+                .setProgress(0, 0, false);
+        notificationManager.notify(NOTIFICATION_ID, builder.build());
+    }
+
+    private PendingIntent getCatalogIntent() {
+        return PendingIntent.getActivity(this, 0, new Intent(this, CatalogActivity.class),
+                PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
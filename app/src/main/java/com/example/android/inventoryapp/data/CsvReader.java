@@ -0,0 +1,112 @@
+package com.example.android.inventoryapp.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma-separated values (RFC 4180) one record at a time, so that files of any size can be
+ * read with a constant amount of memory. Fields may be quoted, with doubled quotes inside quoted
+ * fields; quoted fields may span several lines.
+ */
+public final class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Reader mReader;
+
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPosition;
+    private int mLimit;
+
+    /**
+     * Fields and text of the record being read, reused from record to record
+     */
+    private final List<String> mFields = new ArrayList<>();
+    private final StringBuilder mField = new StringBuilder();
+
+    /**
+     * Constructs a new {@link CsvReader} reading from the given reader, which it closes when closed.
+     */
+    public CsvReader(Reader reader) {
+        mReader = reader;
+    }
+
+    /**
+     * Read the next record. Return its fields, or null at the end of the input.
+     * Empty lines are skipped.
+     */
+    public String[] readRecord() throws IOException {
+        mFields.clear();
+        mField.setLength(0);
+
+        int c = read();
+        // Skip empty lines
+        while (c == '\r' || c == '\n') {
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        boolean quoted = false;
+        boolean fieldStart = true;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c == '"') {
+                        // Doubled quote inside a quoted field
+                        mField.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    mField.append((char) c);
+                }
+            } else if (c == '"' && fieldStart) {
+                quoted = true;
+            } else if (c == ',') {
+                endField();
+                fieldStart = true;
+                c = read();
+                continue;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                endField();
+                return mFields.toArray(new String[mFields.size()]);
+            } else {
+                mField.append((char) c);
+            }
+            fieldStart = false;
+            c = read();
+        }
+    }
+
+    private void endField() {
+        mFields.add(mField.toString());
+        mField.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if (mPosition == mLimit) {
+            mLimit = mReader.read(mBuffer, 0, BUFFER_SIZE);
+            mPosition = 0;
+            if (mLimit <= 0) {
+                mLimit = 0;
+                return -1;
+            }
+        }
+        return mBuffer[mPosition++];
+    }
+
+    @Override
+    public void close() throws IOException {
+        mReader.close();
+    }
+}
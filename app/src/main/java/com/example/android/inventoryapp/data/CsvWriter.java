@@ -0,0 +1,75 @@
+package com.example.android.inventoryapp.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes comma-separated values (RFC 4180) one record at a time, in the format
+ * {@link CsvReader} reads. Fields are only quoted when they need to be.
+ */
+public final class CsvWriter implements Closeable {
+
+    private final Writer mWriter;
+
+    /**
+     * Constructs a new {@link CsvWriter} writing to the given writer, which it closes when closed.
+     */
+    public CsvWriter(Writer writer) {
+        mWriter = writer;
+    }
+
+    /**
+     * Write a record with the given fields. Null fields are written as empty fields.
+     */
+    public void writeRecord(String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i != 0) {
+                mWriter.write(',');
+            }
+            writeField(fields[i]);
+        }
+        mWriter.write("\r\n");
+    }
+
+    private void writeField(String field) throws IOException {
+        if (field == null) {
+            return;
+        }
+        if (!needsQuotes(field)) {
+            mWriter.write(field);
+            return;
+        }
+        mWriter.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') {
+                mWriter.write('"');
+            }
+            mWriter.write(c);
+        }
+        mWriter.write('"');
+    }
+
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Write the buffered records, if any, to the underlying writer.
+     */
+    public void flush() throws IOException {
+        mWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+}
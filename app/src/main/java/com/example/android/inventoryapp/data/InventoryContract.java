@@ -1,6 +1,7 @@
 package com.example.android.inventoryapp.data;
 
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
@@ -32,6 +33,51 @@ public final class InventoryContract {
      */
     public static final String PATH_PRODUCTS = "products";
 
+    /**
+     * Path appended to the products URI to search the products
+     */
+    public static final String PATH_SEARCH = "search";
+
+    /**
+     * Path of the URI notified when the lists of products change
+     */
+    public static final String PATH_PRODUCTS_LIST = "products_list";
+
+    /**
+     * Path appended to the products URI to read the inventory summary
+     */
+    public static final String PATH_STATS = "stats";
+
+    /**
+     * Path appended to the products URI to list the products running low on stock
+     */
+    public static final String PATH_LOW_STOCK = "low_stock";
+
+    /**
+     * Path appended to the URI of a product to read its stored picture
+     */
+    public static final String PATH_PICTURE = "picture";
+
+    /**
+     * Path appended to base content URI for the suppliers
+     */
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    /**
+     * Path appended to base content URI for the provider metrics, in debug builds only
+     */
+    public static final String PATH_METRICS = "_metrics";
+
+    /**
+     * Path appended to base content URI for the log of the slow provider operations
+     */
+    public static final String PATH_SLOW_QUERIES = "_slow_queries";
+
+    /**
+     * Path appended to base content URI for the checkpoints of the product imports
+     */
+    public static final String PATH_IMPORTS = "imports";
+
     /**
      * Inner class that defines constant values for the products database table.
      * Each entry in the table represents a single product.
@@ -53,9 +99,39 @@ public final class InventoryContract {
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_PRODUCTS;
 
+        /** The content URI to search the products, see {@link #buildSearchUri(String)} */
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * The content URI listing the products whose quantity is at or below their reorder
+         * threshold (see {@link #LOW_STOCK_SELECTION}), by name.
+         */
+        public static final Uri CONTENT_LOW_STOCK_URI = Uri.withAppendedPath(CONTENT_URI, PATH_LOW_STOCK);
+
+        /**
+         * The URI notified when products are added, removed, renamed or change supplier.
+         * Cursors listing all the products by name or id are only notified on this URI, not on
+         * the URI of every product that changes, so updating a product doesn't reload them.
+         * It is not a descendant of {@link #CONTENT_URI} and can't be queried.
+         */
+        public static final Uri CONTENT_LIST_NOTIFICATION_URI =
+                Uri.withAppendedPath(BASE_CONTENT_URI, PATH_PRODUCTS_LIST);
+
         /** Name of database table for pets */
         public final static String TABLE_NAME = "products";
 
+        /**
+         * Name of the view of the products along with the name and mail of their supplier.
+         * All the queries of the products read this view.
+         */
+        public final static String VIEW_NAME_WITH_SUPPLIERS = "products_with_suppliers";
+
+        /**
+         * Name of the full-text index over the name and supplier name of the products.
+         * It's kept in sync with {@link #TABLE_NAME} and {@link SupplierEntry#TABLE_NAME} by triggers.
+         */
+        public final static String TABLE_NAME_FTS = "products_fts";
+
         /**
          * Unique ID number for the product (only for use in the database table).
          *
@@ -85,26 +161,108 @@ public final class InventoryContract {
         public final static String COLUMN_PRODUCT_QUANTITY = "quantity";
 
         /**
-         * Picture of the product.
+         * Picture of the product. Pictures picked in the editor are copied into app-private
+         * storage in the background, after which this holds the {@link #buildPictureUri(long, long)}
+         * URI the provider serves the copy at.
          *
          * Type: BLOB
          */
         public final static String COLUMN_PRODUCT_PICTURE = "picture";
 
         /**
-         * Supplier of the product.
+         * Downscaled copy of the picture, sized for the catalog list.
+         * Generated in app-private storage when the picture changes, null until then.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_PRODUCT_THUMBNAIL = "thumbnail";
+
+        /**
+         * Downscaled copy of the picture, sized for the editor.
+         * Generated in app-private storage when the picture changes, null until then.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_PRODUCT_PREVIEW = "preview";
+
+        /**
+         * Id of the supplier of the product in {@link SupplierEntry#TABLE_NAME}.
+         *
+         * TYPE: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_SUPPLIER_ID = "supplier_id";
+
+        /**
+         * Name of the supplier of the product, read from {@link SupplierEntry#TABLE_NAME}.
+         * Products can be written with a supplier name and mail instead of a supplier id; the
+         * supplier with that name and mail is then used, and created if it doesn't exist.
          *
          * TYPE: TEXT
          */
         public final static String COLUMN_PRODUCT_SUPPLIER = "supplier";
 
         /**
-         * Mail of the supplier of the product.
+         * Mail of the supplier of the product, read from {@link SupplierEntry#TABLE_NAME}.
+         * See {@link #COLUMN_PRODUCT_SUPPLIER}.
          *
          * TYPE: TEXT
          */
         public final static String COLUMN_PRODUCT_SUPPLIER_MAIL = "supplier_mail";
 
+        /**
+         * Quantity at or below which the product needs to be reordered. Optional, defaults to 0.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_PRODUCT_REORDER_THRESHOLD = "reorder_threshold";
+
+        /**
+         * Name of the index on {@link #COLUMN_PRODUCT_NAME}.
+         */
+        public final static String INDEX_NAME = "products_name_index";
+
+        /**
+         * Name of the index on {@link #COLUMN_PRODUCT_SUPPLIER}, until suppliers got their own table.
+         */
+        public final static String INDEX_SUPPLIER = "products_supplier_index";
+
+        /**
+         * Name of the index on {@link #COLUMN_PRODUCT_SUPPLIER_ID} and {@link #COLUMN_PRODUCT_NAME}.
+         */
+        public final static String INDEX_SUPPLIER_ID = "products_supplier_id_index";
+
+        /**
+         * Name of the index on {@link #COLUMN_PRODUCT_QUANTITY}.
+         */
+        public final static String INDEX_QUANTITY = "products_quantity_index";
+
+        /**
+         * Name of the index on {@link #COLUMN_PRODUCT_PRICE}.
+         */
+        public final static String INDEX_PRICE = "products_price_index";
+
+        /**
+         * Name of the index on {@link #COLUMN_PRODUCT_SUPPLIER_ID} and {@link #COLUMN_PRODUCT_PRICE}.
+         */
+        public final static String INDEX_SUPPLIER_ID_PRICE = "products_supplier_id_price_index";
+
+        /**
+         * Name of the index on {@link #COLUMN_PRODUCT_SUPPLIER_ID} and {@link #COLUMN_PRODUCT_QUANTITY}.
+         */
+        public final static String INDEX_SUPPLIER_ID_QUANTITY = "products_supplier_id_quantity_index";
+
+        /**
+         * Name of the partial index on {@link #COLUMN_PRODUCT_NAME} of the products running low on
+         * stock. Only created if the SQLite version supports partial indexes.
+         */
+        public final static String INDEX_LOW_STOCK = "products_low_stock_index";
+
+        /**
+         * Selection of the products whose quantity is at or below their reorder threshold.
+         */
+        public final static String LOW_STOCK_SELECTION =
+                COLUMN_PRODUCT_QUANTITY + " <= " + COLUMN_PRODUCT_REORDER_THRESHOLD;
+
         /**
          * Currency of the price.
          */
@@ -115,7 +273,467 @@ public final class InventoryContract {
          */
         public final static int MINIMUM_QUANTITY = 0;
 
+        /**
+         * Query parameter of {@link #CONTENT_URI} limiting the number of products returned.
+         */
+        public final static String QUERY_PARAMETER_LIMIT = "limit";
+
+        /**
+         * Query parameter of {@link #CONTENT_URI} that only returns the products after the product
+         * with this id. On its own, pages are ordered by id. Together with
+         * {@link #QUERY_PARAMETER_AFTER_VALUE}, pages are ordered by the sort column, then id.
+         */
+        public final static String QUERY_PARAMETER_AFTER_ID = "after_id";
+
+        /**
+         * Query parameter of {@link #CONTENT_URI} that only returns the products after the product
+         * with this value of the sort column (and the {@link #QUERY_PARAMETER_AFTER_ID} id) in
+         * {@link #getPageSortOrder(String)}.
+         */
+        public final static String QUERY_PARAMETER_AFTER_VALUE = "after_value";
+
+        /**
+         * Query parameter of {@link #CONTENT_URI} holding the column pages are sorted by, one of
+         * {@link #COLUMN_PRODUCT_NAME} (the default), {@link #COLUMN_PRODUCT_PRICE} or
+         * {@link #COLUMN_PRODUCT_QUANTITY}. Each of them is indexed, so pages are read in index
+         * order without sorting.
+         */
+        public final static String QUERY_PARAMETER_SORT = "sort";
+
+        /**
+         * Sort order of the pages of products by name. Ids break ties between products with
+         * the same name, so every product has a unique position.
+         */
+        public final static String PAGE_SORT_ORDER = COLUMN_PRODUCT_NAME + ", " + _ID;
+
+        /**
+         * Returns whether the given column is one the pages can be sorted by,
+         * see {@link #QUERY_PARAMETER_SORT}.
+         */
+        public static boolean isPageSortColumn(String column) {
+            return COLUMN_PRODUCT_NAME.equals(column) || COLUMN_PRODUCT_PRICE.equals(column)
+                    || COLUMN_PRODUCT_QUANTITY.equals(column);
+        }
+
+        /**
+         * Return the sort order of the pages of products sorted by the given column, with ids
+         * breaking ties.
+         */
+        public static String getPageSortOrder(String sortColumn) {
+            return sortColumn + ", " + _ID;
+        }
+
+        /**
+         * Return the operand through which pages sorted by the given column filter the given
+         * column by range: the column itself if the pages are sorted by it, or else the column
+         * behind a unary +, which keeps the range out of the index lookup so that SQLite reads
+         * the products in the index order of the sort column instead of sorting them.
+         */
+        public static String getPageRangeOperand(String sortColumn, String column) {
+            return column.equals(sortColumn) ? column : "+" + column;
+        }
+
+        /**
+         * Build the content URI of the page of at most limit products that follows the product
+         * with the given name and id in {@link #PAGE_SORT_ORDER}. Pass a null name for the
+         * first page.
+         */
+        public static Uri buildPageUri(int limit, String afterName, long afterId) {
+            return buildPageUri(limit, COLUMN_PRODUCT_NAME, afterName, afterId);
+        }
+
+        /**
+         * Build the content URI of the page of at most limit products that follows the product
+         * with the given value of the sort column and id, sorted by
+         * {@link #getPageSortOrder(String)}. Pass a null value for the first page.
+         */
+        public static Uri buildPageUri(int limit, String sortColumn, String afterValue, long afterId) {
+            Uri.Builder builder = CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .appendQueryParameter(QUERY_PARAMETER_SORT, sortColumn);
+            if (afterValue != null) {
+                builder.appendQueryParameter(QUERY_PARAMETER_AFTER_VALUE, afterValue)
+                        .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Query parameter of the picture URIs telling apart the successive pictures of a product,
+         * so that image caches never mistake a picture for the one it replaced.
+         */
+        public final static String QUERY_PARAMETER_GENERATION = "generation";
+
+        /**
+         * Build the content URI of the given stored picture of the product with the given id.
+         * Opening the URI reads the picture from app-private storage.
+         */
+        public static Uri buildPictureUri(long id, long generation) {
+            return ContentUris.withAppendedId(CONTENT_URI, id).buildUpon()
+                    .appendPath(PATH_PICTURE)
+                    .appendQueryParameter(QUERY_PARAMETER_GENERATION, String.valueOf(generation))
+                    .build();
+        }
+
+        /**
+         * Build the content URI that searches the products whose name or supplier has words
+         * starting with the words of the given query. Searches return at most
+         * {@link #QUERY_PARAMETER_LIMIT} products, 100 if the URI doesn't set it; a query without
+         * any word returns the first products by name.
+         */
+        public static Uri buildSearchUri(String query) {
+            return Uri.withAppendedPath(CONTENT_SEARCH_URI, query);
+        }
+
+        /**
+         * Build the content URI of the page of at most limit search results of the given query
+         * that follows the product with the given name and id, in the default order of the
+         * results. Pass a null name for the first page.
+         */
+        public static Uri buildSearchUri(String query, int limit, String afterName, long afterId) {
+            Uri.Builder builder = buildSearchUri(query).buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit));
+            if (afterName != null) {
+                builder.appendQueryParameter(QUERY_PARAMETER_AFTER_VALUE, afterName)
+                        .appendQueryParameter(QUERY_PARAMETER_AFTER_ID, String.valueOf(afterId));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Provider method that sells units of a product in a single atomic update.
+         * Pass the product id as the argument and optionally {@link #EXTRA_SELL_QUANTITY} in the
+         * extras. The result holds the new quantity under {@link #COLUMN_PRODUCT_QUANTITY},
+         * or {@link #SELL_FAILED} if there wasn't enough stock.
+         */
+        public final static String METHOD_SELL = "sell";
+
+        /**
+         * Number of units to sell with {@link #METHOD_SELL} (defaults to 1).
+         */
+        public final static String EXTRA_SELL_QUANTITY = "sell_quantity";
+
+        /**
+         * Provider method that sells units of several products in a single transaction.
+         * Pass the product ids in {@link #EXTRA_PRODUCT_IDS} and the units to sell of each one in
+         * {@link #EXTRA_SELL_QUANTITIES}. The result holds the new quantities, in the same order,
+         * under {@link #EXTRA_NEW_QUANTITIES}.
+         */
+        public final static String METHOD_SELL_ALL = "sell_all";
+
+        /**
+         * Ids of the products to sell with {@link #METHOD_SELL_ALL} (long array).
+         */
+        public final static String EXTRA_PRODUCT_IDS = "product_ids";
+
+        /**
+         * Units to sell of each product with {@link #METHOD_SELL_ALL} (int array).
+         */
+        public final static String EXTRA_SELL_QUANTITIES = "sell_quantities";
+
+        /**
+         * New quantities of the products sold with {@link #METHOD_SELL_ALL} (int array).
+         */
+        public final static String EXTRA_NEW_QUANTITIES = "new_quantities";
+
+        /**
+         * Quantity returned by {@link #METHOD_SELL} when the product doesn't have enough stock.
+         */
+        public final static int SELL_FAILED = -1;
+
+        /**
+         * Provider method that reports how single-product queries used the row cache of the
+         * provider. The result holds the counters under {@link #EXTRA_CACHE_HITS} and
+         * {@link #EXTRA_CACHE_MISSES}.
+         */
+        public final static String METHOD_ROW_CACHE_STATS = "row_cache_stats";
+
+        /**
+         * Number of single-product queries answered from the row cache (int).
+         */
+        public final static String EXTRA_CACHE_HITS = "cache_hits";
+
+        /**
+         * Number of single-product queries that had to read the database (int).
+         */
+        public final static String EXTRA_CACHE_MISSES = "cache_misses";
+
     }
 
-}
+    /**
+     * Inner class that defines constant values for the suppliers database table.
+     * Each entry in the table represents a single supplier, referenced by its products.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        /** The content URI to access the suppliers in the provider */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a list of suppliers.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for a single supplier.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /** Name of database table for suppliers */
+        public final static String TABLE_NAME = "suppliers";
+
+        /**
+         * Unique ID number for the supplier (only for use in the database table).
+         *
+         * Type: INTEGER
+         */
+        public final static String _ID = BaseColumns._ID;
+
+        /**
+         * Name of the supplier.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER_NAME = "name";
+
+        /**
+         * Mail of the supplier. Suppliers are unique by name and mail.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_SUPPLIER_MAIL = "mail";
+
+        /**
+         * Build the content URI listing the products of the supplier with the given id, by name.
+         */
+        public static Uri buildProductsUri(long id) {
+            return CONTENT_URI.buildUpon()
+                    .appendPath(String.valueOf(id))
+                    .appendPath(PATH_PRODUCTS)
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines constant values for the inventory summary table.
+     * The table holds a single row, kept up to date by triggers on the products table, so reading
+     * it costs the same however many products there are.
+     */
+    public static final class ProductStatsEntry implements BaseColumns {
+
+        /** The content URI to read the inventory summary */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(ProductEntry.CONTENT_URI, PATH_STATS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the inventory summary.
+         */
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_STATS;
+
+        /** Name of database table for the inventory summary */
+        public final static String TABLE_NAME = "product_stats";
+
+        /**
+         * Id of the only row of the table.
+         */
+        public final static long STATS_ID = 1;
+
+        /**
+         * Number of products.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_SKU_COUNT = "sku_count";
+
+        /**
+         * Total quantity of all the products.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_UNIT_COUNT = "unit_count";
+
+        /**
+         * Total value of the stock, the sum of price × quantity over all the products.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_STOCK_VALUE = "stock_value";
+
+        /**
+         * Number of products whose quantity is at {@link ProductEntry#MINIMUM_QUANTITY}.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_OUT_OF_STOCK_COUNT = "out_of_stock_count";
+    }
+
+    /**
+     * Inner class that defines constant values for the checkpoints of the product imports.
+     * A row is written in the same transaction as the products it accounts for, so an interrupted
+     * import resumes exactly after the products already in the database.
+     */
+    public static final class ImportEntry implements BaseColumns {
+
+        /** The content URI to read and delete the checkpoints of the imports */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_IMPORTS);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the checkpoints of the imports.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_IMPORTS;
+
+        /** Name of database table for the checkpoints of the imports */
+        public final static String TABLE_NAME = "imports";
+
+        /**
+         * URI of the imported document. Unique.
+         *
+         * Type: TEXT
+         */
+        public final static String COLUMN_IMPORT_DOCUMENT = "document";
+
+        /**
+         * Number of rows of the document handled, after its header.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_IMPORT_ROWS_READ = "rows_read";
+
+        /**
+         * Number of products imported.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_IMPORT_IMPORTED = "imported";
+
+        /**
+         * Number of rows rejected.
+         *
+         * Type: INTEGER
+         */
+        public final static String COLUMN_IMPORT_REJECTED = "rejected";
+
+        /**
+         * Query parameters of {@link ProductEntry#CONTENT_URI} holding the checkpoint to record
+         * with the products of a bulk insert, see {@link #buildChunkUri(Uri, int, int, int)}.
+         */
+        public final static String QUERY_PARAMETER_DOCUMENT = "import_document";
+        public final static String QUERY_PARAMETER_ROWS_READ = "import_rows_read";
+        public final static String QUERY_PARAMETER_IMPORTED = "import_imported";
+        public final static String QUERY_PARAMETER_REJECTED = "import_rejected";
+
+        /**
+         * Build the content URI to bulk insert a chunk of the products of the given document.
+         * The products are inserted in a single transaction, which also records the given
+         * checkpoint: the rows read, products imported and rows rejected once they are in.
+         */
+        public static Uri buildChunkUri(Uri document, int rowsRead, int imported, int rejected) {
+            return ProductEntry.CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_DOCUMENT, document.toString())
+                    .appendQueryParameter(QUERY_PARAMETER_ROWS_READ, String.valueOf(rowsRead))
+                    .appendQueryParameter(QUERY_PARAMETER_IMPORTED, String.valueOf(imported))
+                    .appendQueryParameter(QUERY_PARAMETER_REJECTED, String.valueOf(rejected))
+                    .build();
+        }
+    }
+
+    /**
+     * Inner class that defines the columns of the provider metrics, one row per operation and
+     * URI pattern that ran at least once since the provider started. Latencies are in
+     * microseconds; percentiles are upper bounds, read from power-of-two histograms.
+     * The metrics can only be queried in debug builds, and are always in the provider dump
+     * (adb shell dumpsys activity provider InventoryProvider).
+     */
+    public static final class MetricsEntry {
+
+        /** The content URI to read the provider metrics, in debug builds only */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_METRICS);
 
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the provider metrics.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_METRICS;
+
+        /** URI pattern of the operation, relative to the authority. Type: TEXT */
+        public final static String COLUMN_PATTERN = "pattern";
+
+        /** Operation: query, insert, bulk_insert, update or delete. Type: TEXT */
+        public final static String COLUMN_OPERATION = "operation";
+
+        /** Number of operations. Type: INTEGER */
+        public final static String COLUMN_COUNT = "count";
+
+        /** Number of operations that threw. Type: INTEGER */
+        public final static String COLUMN_ERRORS = "errors";
+
+        /** Total number of rows returned or affected. Type: INTEGER */
+        public final static String COLUMN_ROWS = "rows";
+
+        /** Mean latency. Type: INTEGER */
+        public final static String COLUMN_MEAN_US = "mean_us";
+
+        /** Median latency. Type: INTEGER */
+        public final static String COLUMN_P50_US = "p50_us";
+
+        /** 90th percentile of the latencies. Type: INTEGER */
+        public final static String COLUMN_P90_US = "p90_us";
+
+        /** 99th percentile of the latencies. Type: INTEGER */
+        public final static String COLUMN_P99_US = "p99_us";
+
+        /** Maximum latency. Type: INTEGER */
+        public final static String COLUMN_MAX_US = "max_us";
+    }
+
+    /**
+     * Inner class that defines the columns of the log of the slow provider operations, newest
+     * first. Only the last operations slower than a threshold are kept, see
+     * R.integer.slow_query_threshold_ms and R.integer.slow_query_log_size.
+     */
+    public static final class SlowQueryEntry {
+
+        /** The content URI to read the log of the slow operations */
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SLOW_QUERIES);
+
+        /**
+         * The MIME type of the {@link #CONTENT_URI} for the log of the slow operations.
+         */
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SLOW_QUERIES;
+
+        /** Time the operation finished, in ms since the epoch. Type: INTEGER */
+        public final static String COLUMN_TIME = "time";
+
+        /** Operation: query, insert, bulk_insert, update or delete. Type: TEXT */
+        public final static String COLUMN_OPERATION = "operation";
+
+        /** URI pattern of the operation, relative to the authority. Type: TEXT */
+        public final static String COLUMN_PATTERN = "pattern";
+
+        /**
+         * SQL of the operation. For updates and deletes, the query selecting the rows they
+         * change; for inserts, the insert statement. Type: TEXT
+         */
+        public final static String COLUMN_SQL = "sql";
+
+        /**
+         * Shape of the selection arguments, without their values: "null", "number" or
+         * "text(length)" for each argument, separated by commas. Type: TEXT
+         */
+        public final static String COLUMN_ARGUMENTS = "arguments";
+
+        /** Number of rows returned or affected, -1 if the operation failed. Type: INTEGER */
+        public final static String COLUMN_ROWS = "rows";
+
+        /** Duration of the operation, in microseconds. Type: INTEGER */
+        public final static String COLUMN_DURATION_US = "duration_us";
+
+        /** Output of EXPLAIN QUERY PLAN for the SQL, one step per line. Type: TEXT */
+        public final static String COLUMN_PLAN = "plan";
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.example.android.inventoryapp.data;
 
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
@@ -20,9 +21,25 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "inventory.db";
 
     /**
-     * Database version. If you change the database schema, you must increment the database version.
+     * Database version. If you change the database schema, you must add a migration to
+     * {@link InventoryMigrations}, which increments the database version.
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = InventoryMigrations.LATEST_VERSION;
+
+    /**
+     * Number of WAL pages after which SQLite checkpoints the log back into the database
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    /**
+     * Size (in bytes) the WAL file is truncated to after a checkpoint
+     */
+    private static final long WAL_JOURNAL_SIZE_LIMIT = 1024 * 1024;
+
+    /**
+     * Whether the database uses write-ahead logging
+     */
+    private final boolean mWriteAheadLogging;
 
     /**
      * Constructs a new instance of {@link InventoryDbHelper}.
@@ -30,7 +47,40 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      * @param context of the app
      */
     public InventoryDbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME, true);
+    }
+
+    /**
+     * Constructs a new instance of {@link InventoryDbHelper} for the given database file.
+     *
+     * @param context           of the app
+     * @param name              of the database file
+     * @param writeAheadLogging true to use write-ahead logging, which lets readers run
+     *                          concurrently with a writer, false to use the rollback journal
+     */
+    InventoryDbHelper(Context context, String name, boolean writeAheadLogging) {
+        // Cursors remember their SQL, to explain the slow queries
+        super(context, name, SlowQueryLog.CURSOR_FACTORY, DATABASE_VERSION);
+        mWriteAheadLogging = writeAheadLogging;
+        setWriteAheadLoggingEnabled(writeAheadLogging);
+    }
+
+    /**
+     * This is called every time the database connection is opened, before it is created or upgraded.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Products must reference existing suppliers
+        db.setForeignKeyConstraintsEnabled(true);
+        if (mWriteAheadLogging) {
+            // In WAL mode a commit only needs to sync the log at checkpoints, without risking
+            // database corruption
+            db.execSQL("PRAGMA synchronous = NORMAL");
+            // Checkpoint regularly and keep the log file small, so reads don't slow down
+            // as the log grows
+            DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint = " + WAL_AUTOCHECKPOINT_PAGES, null);
+            DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit = " + WAL_JOURNAL_SIZE_LIMIT, null);
+        }
     }
 
     /**
@@ -38,26 +88,22 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create a String that contains the SQL statement to create the products table
-        String SQL_CREATE_PRODUCTS_TABLE = "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
-                + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_PRICE + " INTEGER NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL, "
-                + ProductEntry.COLUMN_PRODUCT_PICTURE + " TEXT, "
-                + ProductEntry.COLUMN_PRODUCT_SUPPLIER + " TEXT NOT NULL,"
-                + ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL + " TEXT NOT NULL);";
-
-        // Execute the SQL statement
-        db.execSQL(SQL_CREATE_PRODUCTS_TABLE);
-        Log.v(LOG_TAG, "SQL Statement: " + SQL_CREATE_PRODUCTS_TABLE);
+        // Create the products table as the first version of the app did
+        db.execSQL(InventoryMigrations.SQL_CREATE_PRODUCTS_TABLE_V1);
+        Log.v(LOG_TAG, "SQL Statement: " + InventoryMigrations.SQL_CREATE_PRODUCTS_TABLE_V1);
+
+        // This creates the version 1 schema, so bring it up to date the same way
+        // existing databases are
+        InventoryMigrations.migrate(db, 1, DATABASE_VERSION);
     }
 
     /**
-     * This is called when the database needs to be upgraded.
+     * This is called when the database needs to be upgraded. {@link SQLiteOpenHelper} runs it
+     * inside a transaction, so a failing migration leaves the database at its old version.
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // The database is still at version 1, so there's nothing to do be done here.
+        Log.v(LOG_TAG, "Upgrading database from version " + oldVersion + " to " + newVersion);
+        InventoryMigrations.migrate(db, oldVersion, newVersion);
     }
 }
\ No newline at end of file
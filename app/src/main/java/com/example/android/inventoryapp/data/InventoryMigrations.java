@@ -0,0 +1,393 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.inventoryapp.data.InventoryContract.ImportEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ProductStatsEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+
+/**
+ * Ordered schema migrations for the Inventory database.
+ * The migration at index {@code i} of {@link #MIGRATIONS} upgrades the schema from version
+ * {@code i + 1} to version {@code i + 2}. To change the schema, append a new migration at the end;
+ * never edit or reorder the existing ones.
+ */
+final class InventoryMigrations {
+
+    private InventoryMigrations() {}
+
+    /**
+     * SQL statement creating the products table of version 1 of the schema, which the
+     * migrations start from
+     */
+    static final String SQL_CREATE_PRODUCTS_TABLE_V1 = "CREATE TABLE " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + " INTEGER NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL, "
+            + ProductEntry.COLUMN_PRODUCT_PICTURE + " TEXT, "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER + " TEXT NOT NULL,"
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL + " TEXT NOT NULL);";
+
+    /**
+     * A single step of the schema history.
+     */
+    static abstract class Migration {
+
+        /**
+         * Schema version the database is at once this migration has run
+         */
+        final int toVersion;
+
+        Migration(int toVersion) {
+            this.toVersion = toVersion;
+        }
+
+        /**
+         * Apply this migration. Runs inside the transaction {@link InventoryDbHelper} opened
+         * for the upgrade.
+         */
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    /**
+     * All the migrations, in the order they must be applied.
+     */
+    static final Migration[] MIGRATIONS = {
+            // Index products by name, for lookups and sorting by name
+            new Migration(2) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS " + ProductEntry.INDEX_NAME
+                            + " ON " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_NAME + ");");
+                }
+            },
+            // Index products by supplier, for per-supplier lookups
+            new Migration(3) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS " + ProductEntry.INDEX_SUPPLIER
+                            + " ON " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER + ");");
+                }
+            },
+            // Index products by quantity, for low-stock scans
+            new Migration(4) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS " + ProductEntry.INDEX_QUANTITY
+                            + " ON " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ");");
+                }
+            },
+            // Full-text index over product name and supplier, for search
+            new Migration(5) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    // External content table: the text itself is only stored in the products table
+                    db.execSQL("CREATE VIRTUAL TABLE " + ProductEntry.TABLE_NAME_FTS + " USING fts4("
+                            + "content=\"" + ProductEntry.TABLE_NAME + "\", "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER + ");");
+
+                    // Index the products that already exist
+                    db.execSQL("INSERT INTO " + ProductEntry.TABLE_NAME_FTS + "(" + ProductEntry.TABLE_NAME_FTS
+                            + ") VALUES ('rebuild');");
+
+                    // Keep the index in sync. Old entries must be removed before the row changes,
+                    // because the index reads the old text from the products table.
+                    String deleteOld = "DELETE FROM " + ProductEntry.TABLE_NAME_FTS
+                            + " WHERE docid = old." + ProductEntry._ID + ";";
+                    String insertNew = "INSERT INTO " + ProductEntry.TABLE_NAME_FTS + "(docid, "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER
+                            + ") VALUES (new." + ProductEntry._ID + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+                            + ", new." + ProductEntry.COLUMN_PRODUCT_SUPPLIER + ");";
+                    String updateOf = " UPDATE OF " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER;
+
+                    db.execSQL("CREATE TRIGGER products_fts_before_update BEFORE" + updateOf
+                            + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + deleteOld + " END;");
+                    db.execSQL("CREATE TRIGGER products_fts_before_delete BEFORE DELETE"
+                            + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + deleteOld + " END;");
+                    db.execSQL("CREATE TRIGGER products_fts_after_update AFTER" + updateOf
+                            + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + insertNew + " END;");
+                    db.execSQL("CREATE TRIGGER products_fts_after_insert AFTER INSERT"
+                            + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + insertNew + " END;");
+                }
+            },
+            // Downscaled copies of the product pictures
+            new Migration(6) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME
+                            + " ADD COLUMN " + ProductEntry.COLUMN_PRODUCT_THUMBNAIL + " TEXT;");
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME
+                            + " ADD COLUMN " + ProductEntry.COLUMN_PRODUCT_PREVIEW + " TEXT;");
+                }
+            },
+            // Inventory summary, kept up to date by triggers
+            new Migration(7) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE " + ProductStatsEntry.TABLE_NAME + " ("
+                            + ProductStatsEntry._ID + " INTEGER PRIMARY KEY, "
+                            + ProductStatsEntry.COLUMN_SKU_COUNT + " INTEGER NOT NULL, "
+                            + ProductStatsEntry.COLUMN_UNIT_COUNT + " INTEGER NOT NULL, "
+                            + ProductStatsEntry.COLUMN_STOCK_VALUE + " INTEGER NOT NULL, "
+                            + ProductStatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " INTEGER NOT NULL);");
+
+                    // Summarize the products that already exist, once
+                    String outOfStock = ProductEntry.COLUMN_PRODUCT_QUANTITY + " <= " + ProductEntry.MINIMUM_QUANTITY;
+                    db.execSQL("INSERT INTO " + ProductStatsEntry.TABLE_NAME + " SELECT "
+                            + ProductStatsEntry.STATS_ID + ", COUNT(*), "
+                            + "IFNULL(SUM(" + ProductEntry.COLUMN_PRODUCT_QUANTITY + "), 0), "
+                            + "IFNULL(SUM(" + ProductEntry.COLUMN_PRODUCT_PRICE + " * "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + "), 0), "
+                            + "IFNULL(SUM(" + outOfStock + "), 0) FROM " + ProductEntry.TABLE_NAME + ";");
+
+                    // Then apply the difference every write makes
+                    createStatsTriggers(db);
+                }
+            },
+            // Per-product reorder thresholds, and an index of the products running low on stock
+            new Migration(8) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("ALTER TABLE " + ProductEntry.TABLE_NAME + " ADD COLUMN "
+                            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT 0;");
+
+                    createLowStockIndex(db);
+                }
+            },
+            // Suppliers in their own table, referenced by id from the products
+            new Migration(9) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+                            + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+                            + SupplierEntry.COLUMN_SUPPLIER_MAIL + " TEXT NOT NULL, "
+                            + "UNIQUE (" + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+                            + SupplierEntry.COLUMN_SUPPLIER_MAIL + "));");
+                    db.execSQL("INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+                            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_MAIL
+                            + ") SELECT DISTINCT " + ProductEntry.COLUMN_PRODUCT_SUPPLIER + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL + " FROM " + ProductEntry.TABLE_NAME + ";");
+
+                    // The full-text index reads the supplier from the products table, so it goes
+                    // first. Dropping the products table drops its indexes and triggers.
+                    db.execSQL("DROP TRIGGER products_fts_before_update;");
+                    db.execSQL("DROP TRIGGER products_fts_before_delete;");
+                    db.execSQL("DROP TRIGGER products_fts_after_update;");
+                    db.execSQL("DROP TRIGGER products_fts_after_insert;");
+                    db.execSQL("DROP TABLE " + ProductEntry.TABLE_NAME_FTS + ";");
+
+                    // SQLite can't drop columns, so copy the products to a table without the
+                    // supplier text and replace the old one
+                    String productsTable = ProductEntry.TABLE_NAME + "_new";
+                    db.execSQL("CREATE TABLE " + productsTable + " ("
+                            + ProductEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + " TEXT NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE + " INTEGER NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_QUANTITY + " INTEGER NOT NULL, "
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + " TEXT, "
+                            + ProductEntry.COLUMN_PRODUCT_THUMBNAIL + " TEXT, "
+                            + ProductEntry.COLUMN_PRODUCT_PREVIEW + " TEXT, "
+                            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + " INTEGER NOT NULL DEFAULT 0, "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES "
+                            + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + "));");
+                    String columns = ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", " + ProductEntry.COLUMN_PRODUCT_THUMBNAIL + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PREVIEW + ", " + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD;
+                    db.execSQL("INSERT INTO " + productsTable + " (" + columns + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ") SELECT " + columns + ", "
+                            + "(SELECT s." + SupplierEntry._ID + " FROM " + SupplierEntry.TABLE_NAME + " s"
+                            + " WHERE s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " = " + ProductEntry.COLUMN_PRODUCT_SUPPLIER
+                            + " AND s." + SupplierEntry.COLUMN_SUPPLIER_MAIL + " = " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL
+                            + ") FROM " + ProductEntry.TABLE_NAME + ";");
+                    // The new table only counts the ids it was given, so carry over the highest
+                    // id the old one handed out, for deleted products not to get theirs reused
+                    db.execSQL("DELETE FROM sqlite_sequence WHERE name = '" + productsTable + "';");
+                    db.execSQL("INSERT INTO sqlite_sequence (name, seq) SELECT '" + productsTable
+                            + "', seq FROM sqlite_sequence WHERE name = '" + ProductEntry.TABLE_NAME + "';");
+                    db.execSQL("DROP TABLE " + ProductEntry.TABLE_NAME + ";");
+                    db.execSQL("ALTER TABLE " + productsTable + " RENAME TO " + ProductEntry.TABLE_NAME + ";");
+
+                    // Indexes and triggers of the old table that are still needed
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_NAME
+                            + " ON " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_NAME + ");");
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_QUANTITY
+                            + " ON " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_QUANTITY + ");");
+                    createLowStockIndex(db);
+                    createStatsTriggers(db);
+
+                    // Per-supplier lookups, which list the products by name
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_SUPPLIER_ID + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ");");
+
+                    // The products with the name and mail of their supplier, under the column
+                    // names products used to have
+                    db.execSQL("CREATE VIEW " + ProductEntry.VIEW_NAME_WITH_SUPPLIERS + " AS SELECT "
+                            + ProductEntry.TABLE_NAME + ".*, "
+                            + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                            + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER + ", "
+                            + SupplierEntry.TABLE_NAME + "." + SupplierEntry.COLUMN_SUPPLIER_MAIL
+                            + " AS " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL
+                            + " FROM " + ProductEntry.TABLE_NAME + " JOIN " + SupplierEntry.TABLE_NAME
+                            + " ON " + ProductEntry.TABLE_NAME + "." + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID
+                            + " = " + SupplierEntry.TABLE_NAME + "." + SupplierEntry._ID + ";");
+
+                    // The full-text index now keeps its own copy of the supplier names, as
+                    // they are no longer in the products table
+                    db.execSQL("CREATE VIRTUAL TABLE " + ProductEntry.TABLE_NAME_FTS + " USING fts4("
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER + ");");
+                    db.execSQL("INSERT INTO " + ProductEntry.TABLE_NAME_FTS + " (docid, "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER
+                            + ") SELECT " + ProductEntry._ID + ", " + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER + " FROM " + ProductEntry.VIEW_NAME_WITH_SUPPLIERS + ";");
+
+                    String supplierName = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_NAME + " FROM "
+                            + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = new."
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ")";
+                    String insertNew = "INSERT INTO " + ProductEntry.TABLE_NAME_FTS + " (docid, "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER
+                            + ") VALUES (new." + ProductEntry._ID + ", new." + ProductEntry.COLUMN_PRODUCT_NAME
+                            + ", " + supplierName + ");";
+                    String deleteOld = "DELETE FROM " + ProductEntry.TABLE_NAME_FTS
+                            + " WHERE docid = old." + ProductEntry._ID + ";";
+                    db.execSQL("CREATE TRIGGER products_fts_after_insert AFTER INSERT ON "
+                            + ProductEntry.TABLE_NAME + " BEGIN " + insertNew + " END;");
+                    db.execSQL("CREATE TRIGGER products_fts_after_update AFTER UPDATE OF "
+                            + ProductEntry.COLUMN_PRODUCT_NAME + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID
+                            + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + deleteOld + " " + insertNew + " END;");
+                    db.execSQL("CREATE TRIGGER products_fts_after_delete AFTER DELETE ON "
+                            + ProductEntry.TABLE_NAME + " BEGIN " + deleteOld + " END;");
+                    // Renaming a supplier updates one row of the suppliers table, and the index
+                    // entries of its products
+                    db.execSQL("CREATE TRIGGER suppliers_fts_after_update AFTER UPDATE OF "
+                            + SupplierEntry.COLUMN_SUPPLIER_NAME + " ON " + SupplierEntry.TABLE_NAME
+                            + " BEGIN UPDATE " + ProductEntry.TABLE_NAME_FTS + " SET "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER + " = new." + SupplierEntry.COLUMN_SUPPLIER_NAME
+                            + " WHERE docid IN (SELECT " + ProductEntry._ID + " FROM " + ProductEntry.TABLE_NAME
+                            + " WHERE " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " = new." + SupplierEntry._ID
+                            + "); END;");
+                }
+            },
+            // Indexes for every sort order of the catalog, on their own and within a supplier,
+            // so that sorted pages are read in index order instead of being sorted. Index
+            // entries end with the row id, which breaks the ties of the sort orders.
+            new Migration(10) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_PRICE
+                            + " ON " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_PRICE + ");");
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_SUPPLIER_ID_PRICE + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", " + ProductEntry.COLUMN_PRODUCT_PRICE + ");");
+                    db.execSQL("CREATE INDEX " + ProductEntry.INDEX_SUPPLIER_ID_QUANTITY + " ON " + ProductEntry.TABLE_NAME
+                            + " (" + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ");");
+                }
+            },
+            // Checkpoints of the product imports, committed with the products they account for
+            new Migration(11) {
+                @Override
+                void migrate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE " + ImportEntry.TABLE_NAME + " ("
+                            + ImportEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                            + ImportEntry.COLUMN_IMPORT_DOCUMENT + " TEXT NOT NULL UNIQUE, "
+                            + ImportEntry.COLUMN_IMPORT_ROWS_READ + " INTEGER NOT NULL, "
+                            + ImportEntry.COLUMN_IMPORT_IMPORTED + " INTEGER NOT NULL, "
+                            + ImportEntry.COLUMN_IMPORT_REJECTED + " INTEGER NOT NULL);");
+                }
+            },
+    };
+
+    /**
+     * Create the triggers keeping {@link ProductStatsEntry#TABLE_NAME} up to date with the
+     * products table.
+     */
+    private static void createStatsTriggers(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER product_stats_after_insert AFTER INSERT ON "
+                + ProductEntry.TABLE_NAME + " BEGIN " + updateStats(1, "new", null) + " END;");
+        db.execSQL("CREATE TRIGGER product_stats_after_delete AFTER DELETE ON "
+                + ProductEntry.TABLE_NAME + " BEGIN " + updateStats(-1, null, "old") + " END;");
+        db.execSQL("CREATE TRIGGER product_stats_after_update AFTER UPDATE OF "
+                + ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                + " ON " + ProductEntry.TABLE_NAME + " BEGIN " + updateStats(0, "new", "old") + " END;");
+    }
+
+    /**
+     * Create the partial index of the products running low on stock. Partial indexes need
+     * SQLite 3.8.0 (API 21); older versions list the low-stock products with a scan of the table.
+     */
+    private static void createLowStockIndex(SQLiteDatabase db) {
+        if (supportsPartialIndexes(db)) {
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + ProductEntry.INDEX_LOW_STOCK
+                    + " ON " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_NAME + ")"
+                    + " WHERE " + ProductEntry.LOW_STOCK_SELECTION + ";");
+        }
+    }
+
+    /**
+     * Return true if the SQLite library of the device supports partial indexes (3.8.0 or later).
+     */
+    private static boolean supportsPartialIndexes(SQLiteDatabase db) {
+        String[] version = DatabaseUtils.stringForQuery(db, "SELECT sqlite_version()", null).split("\\.");
+        int major = Integer.parseInt(version[0]);
+        int minor = Integer.parseInt(version[1]);
+        return major > 3 || (major == 3 && minor >= 8);
+    }
+
+    /**
+     * Return the statement adding skuDelta products to the inventory summary, along with the
+     * stock of the added row and minus the stock of the removed row. Rows are the "new" or "old"
+     * row of a trigger, or null if there is none.
+     */
+    private static String updateStats(int skuDelta, String added, String removed) {
+        return "UPDATE " + ProductStatsEntry.TABLE_NAME + " SET "
+                + ProductStatsEntry.COLUMN_SKU_COUNT + " = " + ProductStatsEntry.COLUMN_SKU_COUNT + " + " + skuDelta + ", "
+                + ProductStatsEntry.COLUMN_UNIT_COUNT + " = " + ProductStatsEntry.COLUMN_UNIT_COUNT
+                + stockDelta(added, removed, "%s." + ProductEntry.COLUMN_PRODUCT_QUANTITY) + ", "
+                + ProductStatsEntry.COLUMN_STOCK_VALUE + " = " + ProductStatsEntry.COLUMN_STOCK_VALUE
+                + stockDelta(added, removed, "%1$s." + ProductEntry.COLUMN_PRODUCT_PRICE
+                + " * %1$s." + ProductEntry.COLUMN_PRODUCT_QUANTITY) + ", "
+                + ProductStatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + ProductStatsEntry.COLUMN_OUT_OF_STOCK_COUNT
+                + stockDelta(added, removed, "(%s." + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                + " <= " + ProductEntry.MINIMUM_QUANTITY + ")")
+                + " WHERE " + ProductStatsEntry._ID + " = " + ProductStatsEntry.STATS_ID + ";";
+    }
+
+    /**
+     * Return the SQL adding the given expression of the added row and subtracting it for the
+     * removed row. The expression refers to the row as %s (or %1$s).
+     */
+    private static String stockDelta(String added, String removed, String expression) {
+        String delta = "";
+        if (added != null) {
+            delta += " + " + String.format(expression, added);
+        }
+        if (removed != null) {
+            delta += " - " + String.format(expression, removed);
+        }
+        return delta;
+    }
+
+    /**
+     * Schema version reached once all the migrations have run
+     */
+    static final int LATEST_VERSION = MIGRATIONS.length + 1;
+
+    /**
+     * Apply, in order, every migration needed to bring the database from oldVersion to newVersion.
+     */
+    static void migrate(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion; version < newVersion; version++) {
+            Migration migration = MIGRATIONS[version - 1];
+            if (migration.toVersion != version + 1) {
+                throw new IllegalStateException("Migration to version " + migration.toVersion
+                        + " is out of order, expected version " + (version + 1));
+            }
+            migration.migrate(db);
+        }
+    }
+}
@@ -16,15 +16,43 @@
 package com.example.android.inventoryapp.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.util.Log;
+import android.util.SparseArray;
 
+import com.example.android.inventoryapp.BuildConfig;
+import com.example.android.inventoryapp.R;
+import com.example.android.inventoryapp.data.InventoryContract.MetricsEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ImportEntry;
 import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ProductStatsEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SlowQueryEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * {@link ContentProvider} for Inventory app.
@@ -46,6 +74,56 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final int PRODUCT_ID = 101;
 
+    /**
+     * URI matcher code for the content URI that searches the products table
+     */
+    private static final int PRODUCT_SEARCH = 102;
+
+    /**
+     * URI matcher code for the content URI for the inventory summary
+     */
+    private static final int PRODUCT_STATS = 103;
+
+    /**
+     * URI matcher code for the content URI for the products running low on stock
+     */
+    private static final int PRODUCT_LOW_STOCK = 104;
+
+    /**
+     * URI matcher code for the content URI for the stored picture of a single product
+     */
+    private static final int PRODUCT_PICTURE = 105;
+
+    /**
+     * URI matcher code for the content URI for the suppliers table
+     */
+    private static final int SUPPLIERS = 200;
+
+    /**
+     * URI matcher code for the content URI for a single supplier in the suppliers table
+     */
+    private static final int SUPPLIER_ID = 201;
+
+    /**
+     * URI matcher code for the content URI for the products of a single supplier
+     */
+    private static final int SUPPLIER_PRODUCTS = 202;
+
+    /**
+     * URI matcher code for the content URI for the provider metrics, in debug builds only
+     */
+    private static final int METRICS = 300;
+
+    /**
+     * URI matcher code for the content URI for the log of the slow operations
+     */
+    private static final int SLOW_QUERIES = 301;
+
+    /**
+     * URI matcher code for the content URI for the checkpoints of the product imports
+     */
+    private static final int IMPORTS = 400;
+
     /**
      * UriMatcher object to match a content URI to a corresponding code.
      * The input passed into the constructor represents the code to return for the root URI.
@@ -53,50 +131,280 @@ public class InventoryProvider extends ContentProvider {
      */
     private static final UriMatcher sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
+    /**
+     * Patterns of the content URIs, by URI matcher code, which the metrics are reported under
+     */
+    private static final SparseArray<String> sUriPatterns = new SparseArray<>();
+
     // Static initializer. This is run the first time anything is called from this class.
     static {
         // The calls to addURI() go here, for all of the content URI patterns that the provider
         // should recognize. All paths added to the UriMatcher have a corresponding code to return
         // when a match is found.
 
-        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_PRODUCTS, PRODUCTS);
-        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_PRODUCTS + "/#", PRODUCT_ID);
+        addUri(InventoryContract.PATH_PRODUCTS, PRODUCTS);
+        addUri(InventoryContract.PATH_PRODUCTS + "/#", PRODUCT_ID);
+        addUri(InventoryContract.PATH_PRODUCTS + "/" + InventoryContract.PATH_SEARCH + "/*", PRODUCT_SEARCH);
+        addUri(InventoryContract.PATH_PRODUCTS + "/" + InventoryContract.PATH_STATS, PRODUCT_STATS);
+        addUri(InventoryContract.PATH_PRODUCTS + "/" + InventoryContract.PATH_LOW_STOCK, PRODUCT_LOW_STOCK);
+        addUri(InventoryContract.PATH_PRODUCTS + "/#/" + InventoryContract.PATH_PICTURE, PRODUCT_PICTURE);
+        addUri(InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+        addUri(InventoryContract.PATH_SUPPLIERS + "/#", SUPPLIER_ID);
+        addUri(InventoryContract.PATH_SUPPLIERS + "/#/" + InventoryContract.PATH_PRODUCTS, SUPPLIER_PRODUCTS);
+        if (BuildConfig.DEBUG) {
+            addUri(InventoryContract.PATH_METRICS, METRICS);
+        }
+        addUri(InventoryContract.PATH_SLOW_QUERIES, SLOW_QUERIES);
+        addUri(InventoryContract.PATH_IMPORTS, IMPORTS);
+    }
+
+    /**
+     * Make the URI matcher recognize the given path pattern, with the given code.
+     */
+    private static void addUri(String path, int code) {
+        sUriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, path, code);
+        sUriPatterns.put(code, path);
     }
 
+    /**
+     * Number of rows committed per transaction by {@link #bulkInsert(Uri, ContentValues[])}
+     */
+    private static final int BULK_INSERT_CHUNK_SIZE = 500;
+
+    /**
+     * Maximum number of products a search returns when its URI doesn't carry a limit
+     */
+    private static final int SEARCH_LIMIT = 100;
+
+    /**
+     * Number of operations after which {@link #applyBatch(ArrayList)} gives other connections
+     * a chance to access the database, if they are waiting for it
+     */
+    private static final int BATCH_YIELD_INTERVAL = 100;
+
+    /**
+     * Time (in ms) the batch transaction sleeps after yielding, to let readers in
+     */
+    private static final long BATCH_YIELD_SLEEP_MS = 0;
+
+    /**
+     * SQL statement used by {@link #bulkInsert(Uri, ContentValues[])} to insert a single product
+     */
+    private static final String SQL_INSERT_PRODUCT = "INSERT INTO " + ProductEntry.TABLE_NAME + " ("
+            + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+            + ProductEntry.COLUMN_PRODUCT_PRICE + ", "
+            + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_PICTURE + ", "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ", "
+            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * SQL query used by {@link #sellProduct(long, int)} to read back the stock of a product
+     */
+    private static final String SQL_QUERY_PRODUCT_STOCK = "SELECT " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+            + ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD + ", " + ProductEntry.COLUMN_PRODUCT_NAME
+            + " FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = ?";
+
+    /**
+     * SQL query used to look up a supplier by name and mail
+     */
+    private static final String SQL_QUERY_SUPPLIER_ID = "SELECT " + SupplierEntry._ID
+            + " FROM " + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ? AND "
+            + SupplierEntry.COLUMN_SUPPLIER_MAIL + " = ?";
+
+    /**
+     * Temporary table in which {@link #updateProductStock} records the updated products that
+     * weren't running low yet
+     */
+    private static final String TABLE_NAME_STOCKED_PRODUCTS = "temp.stocked_products";
+
+    /**
+     * SQL statement creating {@link #TABLE_NAME_STOCKED_PRODUCTS}, if the connection doesn't have
+     * it yet
+     */
+    private static final String SQL_CREATE_STOCKED_PRODUCTS = "CREATE TEMP TABLE IF NOT EXISTS stocked_products ("
+            + ProductEntry._ID + " INTEGER PRIMARY KEY)";
+
+    /**
+     * Selection of the products recorded in {@link #TABLE_NAME_STOCKED_PRODUCTS}
+     */
+    private static final String STOCKED_PRODUCTS_SELECTION = ProductEntry._ID + " IN (SELECT "
+            + ProductEntry._ID + " FROM " + TABLE_NAME_STOCKED_PRODUCTS + ")";
+
+    /**
+     * Selection of the suppliers that no product references
+     */
+    private static final String UNUSED_SUPPLIER_SELECTION = SupplierEntry._ID + " NOT IN (SELECT "
+            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + " FROM " + ProductEntry.TABLE_NAME + ")";
+
+    /**
+     * SQL statement used by {@link #sellProduct(long, int)} to decrement the quantity of a product,
+     * only if it has enough stock
+     */
+    private static final String SQL_SELL_PRODUCT = "UPDATE " + ProductEntry.TABLE_NAME
+            + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " = " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " - ?"
+            + " WHERE " + ProductEntry._ID + " = ? AND " + ProductEntry.COLUMN_PRODUCT_QUANTITY + " >= ?";
+
     /**
      * Database helper object
      */
     private InventoryDbHelper mDbHelper;
 
+    /**
+     * Change notifications held back while {@link #applyBatch(ArrayList)} runs on this thread.
+     * Null when the current thread is not applying a batch.
+     */
+    private final ThreadLocal<Set<Uri>> mPendingNotifications = new ThreadLocal<>();
+
+    /**
+     * Low stock alerts held back while {@link #applyBatch(ArrayList)} runs on this thread.
+     * Null when the current thread is not applying a batch.
+     */
+    private final ThreadLocal<List<LowStockAlerts.Alert>> mPendingAlerts = new ThreadLocal<>();
+
+    /**
+     * Ids of the products whose files are deleted once {@link #applyBatch(ArrayList)}, running on
+     * this thread, has committed their deletion. Null when the current thread is not applying a
+     * batch.
+     */
+    private final ThreadLocal<List<long[]>> mPendingDeletedProducts = new ThreadLocal<>();
+
+    /**
+     * Cache of the rows returned by single-product queries, null if disabled
+     */
+    private ProductRowCache mRowCache;
+
+    /**
+     * Counters and latencies of the operations, per URI pattern
+     */
+    private ProviderMetrics mMetrics;
+
+    /**
+     * Log of the operations slower than R.integer.slow_query_threshold_ms
+     */
+    private SlowQueryLog mSlowQueryLog;
+
     @Override
     public boolean onCreate() {
         mDbHelper = new InventoryDbHelper(getContext());
+        mMetrics = new ProviderMetrics(sUriPatterns);
+        mSlowQueryLog = new SlowQueryLog(
+                getContext().getResources().getInteger(R.integer.slow_query_threshold_ms),
+                getContext().getResources().getInteger(R.integer.slow_query_log_size));
+        int rowCacheSize = getContext().getResources().getInteger(R.integer.product_row_cache_size);
+        if (rowCacheSize > 0) {
+            mRowCache = new ProductRowCache(rowCacheSize);
+        }
         return true;
     }
 
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
                         String sortOrder) {
+        long start = System.nanoTime();
+        // Figure out if the URI matcher can match the URI to a specific code
+        int match = sUriMatcher.match(uri);
+        int rows = -1;
+        Cursor cursor = null;
+        try {
+            cursor = query(match, uri, projection, selection, selectionArgs, sortOrder);
+            // Counting the rows runs the query, which SQLite cursors otherwise defer to their
+            // first access, so the latency includes it. They keep the count for their caller.
+            rows = cursor.getCount();
+            return cursor;
+        } finally {
+            record(ProviderMetrics.OPERATION_QUERY, match, start, rows, cursor, selection, selectionArgs);
+        }
+    }
+
+    /**
+     * Query the given URI, which matched the given code.
+     */
+    private Cursor query(int match, Uri uri, String[] projection, String selection,
+                         String[] selectionArgs, String sortOrder) {
         // Get readable database
         SQLiteDatabase database = mDbHelper.getReadableDatabase();
 
         // This cursor will hold the result of the query
         Cursor cursor;
 
-        // Figure out if the URI matcher can match the URI to a specific code
-        int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
-                /* Query the entire Products table */
-                cursor = database.query(ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
-                        null, null, sortOrder);
+                /* Query the entire Products table, or a page of it */
+                sortOrder = getPageSortOrder(uri, sortOrder);
+                boolean unfiltered = isUnfilteredList(selection, sortOrder);
+                cursor = queryProductPage(database, uri, projection, selection, selectionArgs, sortOrder);
+                if (unfiltered) {
+                    // Changes to single products don't change which products are listed
+                    uri = ProductEntry.CONTENT_LIST_NOTIFICATION_URI;
+                }
                 break;
             case PRODUCT_ID:
                 /* Query for a specific row in the Products table */
-                selection = ProductEntry._ID + "=?";
+                cursor = queryProduct(database, ContentUris.parseId(uri), projection);
+                break;
+            case PRODUCT_SEARCH:
+                /* Search the Products table through its full-text index */
+                boolean rankedByName = sortOrder == null;
+                cursor = searchProducts(database, uri, projection, sortOrder);
+                // Search results only change when products are added, removed, renamed or
+                // change supplier, unless they are sorted by other columns
+                uri = rankedByName ? ProductEntry.CONTENT_LIST_NOTIFICATION_URI : ProductEntry.CONTENT_URI;
+                break;
+            case PRODUCT_STATS:
+                /* Read the single row of the summary table, kept up to date by triggers */
+                cursor = database.query(ProductStatsEntry.TABLE_NAME, projection, null, null,
+                        null, null, null);
+                // Any change to the products may change the summary
+                uri = ProductEntry.CONTENT_URI;
+                break;
+            case PRODUCT_LOW_STOCK:
+                /* Query the products running low on stock, through their partial index */
+                selection = DatabaseUtils.concatenateWhere(ProductEntry.LOW_STOCK_SELECTION, selection);
+                if (sortOrder == null) {
+                    sortOrder = ProductEntry.COLUMN_PRODUCT_NAME;
+                }
+                cursor = database.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                // Any change of stock may add or remove products
+                uri = ProductEntry.CONTENT_URI;
+                break;
+            case SUPPLIERS:
+                /* Query the entire Suppliers table */
+                if (sortOrder == null) {
+                    sortOrder = SupplierEntry.COLUMN_SUPPLIER_NAME;
+                }
+                cursor = database.query(SupplierEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                break;
+            case SUPPLIER_ID:
+                /* Query for a specific row in the Suppliers table */
+                selection = SupplierEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-
-                cursor = database.query(ProductEntry.TABLE_NAME, projection, selection, selectionArgs,
+                cursor = database.query(SupplierEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                break;
+            case SUPPLIER_PRODUCTS:
+                /* Query the products of a supplier, through the index on supplier id and name */
+                selection = DatabaseUtils.concatenateWhere(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + "=?", selection);
+                selectionArgs = DatabaseUtils.appendSelectionArgs(
+                        new String[]{uri.getPathSegments().get(1)}, selectionArgs);
+                if (sortOrder == null) {
+                    sortOrder = ProductEntry.COLUMN_PRODUCT_NAME;
+                }
+                cursor = database.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                        null, null, sortOrder);
+                // Any product may be added to or removed from the supplier
+                uri = ProductEntry.CONTENT_URI;
+                break;
+            case METRICS:
+                /* Read the metrics of the provider, which don't change the database */
+                return mMetrics.toCursor();
+            case SLOW_QUERIES:
+                return mSlowQueryLog.toCursor();
+            case IMPORTS:
+                /* Query the checkpoints of the interrupted imports */
+                cursor = database.query(ImportEntry.TABLE_NAME, projection, selection, selectionArgs,
                         null, null, sortOrder);
                 break;
             default:
@@ -112,12 +420,245 @@ public class InventoryProvider extends ContentProvider {
         return cursor;
     }
 
+    /**
+     * Return the given columns of the product with the given id. Recently queried products are
+     * answered from {@link #mRowCache} without reading the database, except within a transaction
+     * of this thread: the cache only holds committed rows, and is only invalidated on commit.
+     */
+    private Cursor queryProduct(SQLiteDatabase database, long id, String[] projection) {
+        String selection = ProductEntry._ID + "=?";
+        String[] selectionArgs = new String[]{String.valueOf(id)};
+
+        if (mRowCache != null && !database.inTransaction()) {
+            Cursor cursor = mRowCache.get(id, projection);
+            if (cursor != null) {
+                return cursor;
+            }
+
+            // Read and cache the whole row, so that any projection can be answered next time
+            long token = mRowCache.startRead();
+            Cursor row = database.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, null, selection, selectionArgs,
+                    null, null, null);
+            try {
+                if (row.moveToFirst()) {
+                    cursor = mRowCache.put(id, row, token, projection);
+                    if (cursor != null) {
+                        return cursor;
+                    }
+                }
+            } finally {
+                row.close();
+            }
+        }
+
+        return database.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                null, null, null);
+    }
+
+    /**
+     * Return true if a query of the products table with the given selection and sort order
+     * lists every product in an order that only depends on their name or id. The products such a
+     * query returns, and their order, only change when products are added, removed or renamed.
+     */
+    private static boolean isUnfilteredList(String selection, String sortOrder) {
+        return selection == null && (sortOrder == null
+                || sortOrder.equals(ProductEntry.PAGE_SORT_ORDER)
+                || sortOrder.equals(ProductEntry.COLUMN_PRODUCT_NAME)
+                || sortOrder.equals(ProductEntry._ID));
+    }
+
+    /**
+     * Return the sort order of a query of the products with the given URI: the order of the
+     * pages if the URI has pagination query parameters, the given sort order otherwise.
+     */
+    private static String getPageSortOrder(Uri uri, String sortOrder) {
+        String sortColumn = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_SORT);
+        if (sortColumn != null) {
+            // Check that the pages are sorted by an indexed column
+            if (!ProductEntry.isPageSortColumn(sortColumn)) {
+                throw new IllegalArgumentException("Pages cannot be sorted by " + sortColumn);
+            }
+            return ProductEntry.getPageSortOrder(sortColumn);
+        } else if (uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_VALUE) != null) {
+            return ProductEntry.PAGE_SORT_ORDER;
+        } else if (uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_ID) != null) {
+            return ProductEntry._ID;
+        }
+        return sortOrder;
+    }
+
+    /**
+     * Query the products table, applying the keyset pagination query parameters of the URI
+     * ({@link ProductEntry#QUERY_PARAMETER_LIMIT}, {@link ProductEntry#QUERY_PARAMETER_AFTER_ID},
+     * {@link ProductEntry#QUERY_PARAMETER_AFTER_VALUE} and {@link ProductEntry#QUERY_PARAMETER_SORT}).
+     * Pages start with an index seek right after the last product of the previous page, so every
+     * page costs the same however deep into the catalog it is. The start is written as a range
+     * on the sort column, which SQLite seeks to, refined by the id for the products that tie
+     * with the previous one; the equivalent "value > ? OR (value = ? AND id > ?)" is only
+     * evaluated row by row, or split into a multi-index OR that needs sorting.
+     *
+     * @param sortOrder Sort order returned by {@link #getPageSortOrder(Uri, String)}
+     */
+    private Cursor queryProductPage(SQLiteDatabase database, Uri uri, String[] projection,
+                                    String selection, String[] selectionArgs, String sortOrder) {
+        String limit = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_LIMIT);
+        String afterId = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_ID);
+        String afterValue = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_VALUE);
+        String sortParameter = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_SORT);
+        String sortColumn = sortParameter != null ? sortParameter : ProductEntry.COLUMN_PRODUCT_NAME;
+
+        // Check that the limit is valid
+        if (limit != null && parsePositiveLong(limit) == null) {
+            throw new IllegalArgumentException("Page requires a valid limit(>0)");
+        }
+
+        // Check that the page start is valid
+        if (afterId != null && parsePositiveLong(afterId) == null) {
+            throw new IllegalArgumentException("Page requires a valid start id(>0)");
+        }
+
+        if (afterValue != null) {
+            if (afterId == null) {
+                throw new IllegalArgumentException("Page by " + sortColumn + " requires a start id");
+            }
+            // Products after the given one in the order of the sort column. Price and quantity
+            // arguments are compared as numbers, as the columns have integer affinity.
+            selection = DatabaseUtils.concatenateWhere(selection, sortColumn + " >= ? AND ("
+                    + sortColumn + " > ? OR " + ProductEntry._ID + " > ?)");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[]{afterValue, afterValue, afterId});
+        } else if (afterId != null) {
+            if (sortParameter != null) {
+                throw new IllegalArgumentException("Page by " + sortColumn + " requires a start value");
+            }
+            // Products after the given one in id order
+            selection = DatabaseUtils.concatenateWhere(selection, ProductEntry._ID + " > ?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[]{afterId});
+        }
+
+        return database.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                null, null, sortOrder, limit);
+    }
+
+    /**
+     * Parse the given string as a positive number, returning null if it isn't one.
+     */
+    private static Long parsePositiveLong(String value) {
+        try {
+            long number = Long.parseLong(value);
+            return number > 0 ? number : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the products whose name or supplier contain words starting with every word of the
+     * query of the given search URI, at most the limit of the URI or {@link #SEARCH_LIMIT} of
+     * them. Unless another sort order is given, products whose name starts with the query come
+     * first, then the rest by name and id; the URI may then ask for the products after a given
+     * one, see {@link ProductEntry#buildSearchUri(String, int, String, long)}.
+     */
+    private Cursor searchProducts(SQLiteDatabase database, Uri uri, String[] projection, String sortOrder) {
+        String query = uri.getLastPathSegment();
+        String limit = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_LIMIT);
+        if (limit == null) {
+            limit = String.valueOf(SEARCH_LIMIT);
+        } else if (parsePositiveLong(limit) == null) {
+            throw new IllegalArgumentException("Search requires a valid limit(>0)");
+        }
+
+        // Check that the page start is valid
+        String afterName = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_VALUE);
+        String afterId = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_AFTER_ID);
+        if ((afterName == null) != (afterId == null)) {
+            throw new IllegalArgumentException("Search page requires both a start name and id");
+        }
+        if (afterId != null && parsePositiveLong(afterId) == null) {
+            throw new IllegalArgumentException("Search page requires a valid start id(>0)");
+        }
+        if (afterId != null && sortOrder != null) {
+            throw new IllegalArgumentException("Search pages only follow the default order");
+        }
+
+        // Turn every word of the query into a prefix term, dropping the characters that
+        // have a special meaning in full-text queries
+        StringBuilder matchExpression = new StringBuilder();
+        for (String word : query.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                matchExpression.append(word).append("* ");
+            }
+        }
+
+        // A query without any word lists the products by name, like the catalog does
+        if (matchExpression.length() == 0) {
+            String selection = null;
+            String[] selectionArgs = null;
+            if (afterId != null) {
+                selection = ProductEntry.COLUMN_PRODUCT_NAME + " >= ? AND (" + ProductEntry.COLUMN_PRODUCT_NAME
+                        + " > ? OR " + ProductEntry._ID + " > ?)";
+                selectionArgs = new String[]{afterName, afterName, afterId};
+            }
+            return database.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                    null, null, sortOrder != null ? sortOrder : ProductEntry.PAGE_SORT_ORDER, limit);
+        }
+
+        String selection = ProductEntry._ID + " IN (SELECT docid FROM " + ProductEntry.TABLE_NAME_FTS
+                + " WHERE " + ProductEntry.TABLE_NAME_FTS + " MATCH ?)";
+        String[] selectionArgs = {matchExpression.toString().trim()};
+
+        if (sortOrder == null) {
+            String pattern = DatabaseUtils.sqlEscapeString(query.trim() + "%");
+            String rank = getSearchRank(ProductEntry.COLUMN_PRODUCT_NAME, pattern);
+            sortOrder = rank + ", " + ProductEntry.PAGE_SORT_ORDER;
+
+            // Products after the given one in that order. The rank of the given product follows
+            // from its name, so pages only need its name and id.
+            if (afterId != null) {
+                String afterRank = getSearchRank("?", pattern);
+                selection = DatabaseUtils.concatenateWhere(selection, rank + " > " + afterRank
+                        + " OR (" + rank + " = " + afterRank + " AND (" + ProductEntry.COLUMN_PRODUCT_NAME
+                        + " > ? OR (" + ProductEntry.COLUMN_PRODUCT_NAME + " = ? AND " + ProductEntry._ID + " > ?)))");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                        new String[]{afterName, afterName, afterName, afterName, afterId});
+            }
+        }
+
+        return database.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, projection, selection, selectionArgs,
+                null, null, sortOrder, limit);
+    }
+
+    /**
+     * Return the SQL expression ranking the given name first among the search results, 0, if it
+     * matches the given LIKE pattern, or second, 1, otherwise.
+     */
+    private static String getSearchRank(String name, String pattern) {
+        return "(CASE WHEN " + name + " LIKE " + pattern + " THEN 0 ELSE 1 END)";
+    }
+
     @Override
     public Uri insert(Uri uri, ContentValues contentValues) {
+        long start = System.nanoTime();
         final int match = sUriMatcher.match(uri);
+        int rows = -1;
+        try {
+            Uri newUri = insert(match, uri, contentValues);
+            rows = newUri != null ? 1 : 0;
+            return newUri;
+        } finally {
+            record(ProviderMetrics.OPERATION_INSERT, match, start, rows, null, null, null);
+        }
+    }
+
+    /**
+     * Insert a row at the given URI, which matched the given code.
+     */
+    private Uri insert(int match, Uri uri, ContentValues contentValues) {
         switch (match) {
             case PRODUCTS:
                 return insertProduct(uri, contentValues);
+            case SUPPLIERS:
+                return insertSupplier(uri, contentValues);
             default:
                 throw new IllegalArgumentException("Insertion is not supported for " + uri);
         }
@@ -128,6 +669,44 @@ public class InventoryProvider extends ContentProvider {
      * for that specific row in the database.
      */
     private Uri insertProduct(Uri uri, ContentValues values) {
+        // Check that the values describe a valid product
+        checkProductValues(values);
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Insert the new pet with the given values, along with its supplier if it's a new one
+        long id;
+        database.beginTransaction();
+        try {
+            id = database.insert(ProductEntry.TABLE_NAME, null, withSupplierId(database, values, null));
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        // If the ID is -1, then the insertion failed. Log an error and return null.
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        // Notify all listeners that the new product was added to the list of products
+        Uri newUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(newUri);
+        notifyChange(ProductEntry.CONTENT_LIST_NOTIFICATION_URI);
+        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER)) {
+            notifyChange(SupplierEntry.CONTENT_URI);
+        }
+
+        // Return the new URI with the ID (of the newly inserted row) appended at the end
+        return newUri;
+    }
+
+    /**
+     * Check that the given content values describe a valid product, throwing an
+     * {@link IllegalArgumentException} otherwise.
+     */
+    static void checkProductValues(ContentValues values) {
         // Check that the name is not null
         String name = values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME);
         if (name == null) {
@@ -146,49 +725,299 @@ public class InventoryProvider extends ContentProvider {
             throw new IllegalArgumentException("Product requires a valid quantity(>=0)");
         }
 
-        // Check that the supplier is not null
-        String supplier = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER);
-        if (supplier == null) {
-            throw new IllegalArgumentException("Product requires a supplier");
+        // Check that the supplier is given, by id or by name and mail
+        if (values.getAsLong(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID) == null) {
+            // Check that the supplier is not null
+            String supplier = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER);
+            if (supplier == null) {
+                throw new IllegalArgumentException("Product requires a supplier");
+            }
+
+            // Check that the supplier mail is not null
+            String supplierMail = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL);
+            if (supplierMail == null) {
+                throw new IllegalArgumentException("Product requires a supplier mail");
+            }
         }
 
-        // Check that the supplier mail is not null
-        String supplierMail = values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL);
-        if (supplierMail == null) {
-            throw new IllegalArgumentException("Product requires a supplier mail");
+        // Check that the reorder threshold, if any, is valid
+        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD)) {
+            checkReorderThreshold(values);
         }
 
         // No need to check the picture, any value is valid (including null).
+    }
+
+    /**
+     * Return the given (already validated) product values, with the supplier name and mail
+     * replaced by the id of the supplier with that name and mail. The supplier is created if it
+     * doesn't exist yet, so this must be called inside a transaction. Values without a supplier
+     * name are returned as they are.
+     *
+     * @param supplierIds Ids of the suppliers already looked up, by name and mail, or null
+     */
+    private static ContentValues withSupplierId(SQLiteDatabase database, ContentValues values,
+                                                Map<String, Long> supplierIds) {
+        if (!values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER)) {
+            return values;
+        }
+
+        ContentValues productValues = new ContentValues(values);
+        productValues.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER);
+        productValues.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL);
+        productValues.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, getSupplierId(database,
+                values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER),
+                values.getAsString(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL), supplierIds));
+        return productValues;
+    }
+
+    /**
+     * Return the id of the supplier with the given name and mail, creating it if it doesn't exist.
+     * Must be called inside a transaction.
+     *
+     * @param supplierIds Ids of the suppliers already looked up, by name and mail, or null
+     */
+    private static long getSupplierId(SQLiteDatabase database, String name, String mail,
+                                      Map<String, Long> supplierIds) {
+        String key = name + '\n' + mail;
+        Long id = supplierIds != null ? supplierIds.get(key) : null;
+        if (id != null) {
+            return id;
+        }
+
+        Cursor cursor = database.rawQuery(SQL_QUERY_SUPPLIER_ID, new String[]{name, mail});
+        try {
+            if (cursor.moveToFirst()) {
+                id = cursor.getLong(0);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (id == null) {
+            ContentValues supplierValues = new ContentValues();
+            supplierValues.put(SupplierEntry.COLUMN_SUPPLIER_NAME, name);
+            supplierValues.put(SupplierEntry.COLUMN_SUPPLIER_MAIL, mail);
+            id = database.insertOrThrow(SupplierEntry.TABLE_NAME, null, supplierValues);
+        }
+
+        if (supplierIds != null) {
+            supplierIds.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * Return a selection of the products table matching the same products as the given
+     * selection of {@link ProductEntry#VIEW_NAME_WITH_SUPPLIERS}, which clients write their
+     * selections against.
+     */
+    private static String selectProductsInView(String selection) {
+        if (selection == null) {
+            return null;
+        }
+        return ProductEntry._ID + " IN (SELECT " + ProductEntry._ID + " FROM "
+                + ProductEntry.VIEW_NAME_WITH_SUPPLIERS + " WHERE " + selection + ")";
+    }
+
+    /**
+     * Check that the reorder threshold of the given content values is valid, throwing an
+     * {@link IllegalArgumentException} otherwise.
+     */
+    private static void checkReorderThreshold(ContentValues values) {
+        Integer reorderThreshold = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
+        if (reorderThreshold == null || reorderThreshold < 0) {
+            throw new IllegalArgumentException("Product requires a valid reorder threshold(>=0)");
+        }
+    }
+
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        long start = System.nanoTime();
+        final int match = sUriMatcher.match(uri);
+        int rows = -1;
+        try {
+            rows = bulkInsert(match, uri, values);
+            return rows;
+        } finally {
+            record(ProviderMetrics.OPERATION_BULK_INSERT, match, start, rows, null, null, null);
+        }
+    }
+
+    /**
+     * Insert rows at the given URI, which matched the given code.
+     */
+    private int bulkInsert(int match, Uri uri, ContentValues[] values) {
+        switch (match) {
+            case PRODUCTS:
+                return bulkInsertProducts(uri, values);
+            default:
+                throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+    }
+
+    /**
+     * Insert all the given products into the database, committing them in chunks of
+     * {@link #BULK_INSERT_CHUNK_SIZE} rows per transaction. If the URI carries the checkpoint of
+     * an import, see {@link ImportEntry#buildChunkUri(Uri, int, int, int)}, all the products are
+     * committed in a single transaction, along with the checkpoint. Return the number of rows
+     * inserted.
+     */
+    private int bulkInsertProducts(Uri uri, ContentValues[] values) {
+        // Validate the whole batch up front, so that an invalid product doesn't leave
+        // a partially inserted batch behind
+        for (ContentValues productValues : values) {
+            checkProductValues(productValues);
+        }
 
         // Get writeable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        // Insert the new pet with the given values
-        long id = database.insert(ProductEntry.TABLE_NAME, null, values);
-        // If the ID is -1, then the insertion failed. Log an error and return null.
-        if (id == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+        // Compile the insert statement once and re-bind it for every row
+        SQLiteStatement statement = database.compileStatement(SQL_INSERT_PRODUCT);
+
+        // The products of a batch usually come from a few suppliers
+        Map<String, Long> supplierIds = new HashMap<>();
+
+        // The products of an import are committed together with its checkpoint, so that the
+        // import never resumes before products that are already in
+        ContentValues checkpoint = getImportCheckpoint(uri);
+        int chunkSize = checkpoint != null ? Math.max(values.length, 1) : BULK_INSERT_CHUNK_SIZE;
+
+        // Rows of the chunks committed so far
+        int rowsInserted = 0;
+        try {
+            for (int chunkStart = 0; chunkStart < values.length; chunkStart += chunkSize) {
+                int chunkEnd = Math.min(chunkStart + chunkSize, values.length);
+                int chunkRowsInserted = 0;
+                database.beginTransaction();
+                try {
+                    for (int i = chunkStart; i < chunkEnd; i++) {
+                        bindProductValues(statement, withSupplierId(database, values[i], supplierIds));
+                        if (statement.executeInsert() == -1) {
+                            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+                        } else {
+                            chunkRowsInserted++;
+                        }
+                    }
+                    if (checkpoint != null) {
+                        database.insertWithOnConflict(ImportEntry.TABLE_NAME, null, checkpoint,
+                                SQLiteDatabase.CONFLICT_REPLACE);
+                    }
+                    database.setTransactionSuccessful();
+                } finally {
+                    database.endTransaction();
+                }
+                rowsInserted += chunkRowsInserted;
+            }
+        } finally {
+            statement.close();
+
+            // Notify all listeners once that the data has changed for the product content URI,
+            // even if a later chunk failed, since the chunks before it are already committed
+            if (rowsInserted != 0) {
+                notifyChange(uri);
+                notifyChange(ProductEntry.CONTENT_LIST_NOTIFICATION_URI);
+                if (!supplierIds.isEmpty()) {
+                    notifyChange(SupplierEntry.CONTENT_URI);
+                }
+            }
+        }
+
+        // Return the number of rows inserted
+        return rowsInserted;
+    }
+
+    /**
+     * Return the values of the import checkpoint the given bulk insert URI carries, or null if
+     * it doesn't carry one.
+     */
+    private static ContentValues getImportCheckpoint(Uri uri) {
+        String document = uri.getQueryParameter(ImportEntry.QUERY_PARAMETER_DOCUMENT);
+        if (document == null) {
             return null;
         }
+        ContentValues checkpoint = new ContentValues();
+        checkpoint.put(ImportEntry.COLUMN_IMPORT_DOCUMENT, document);
+        checkpoint.put(ImportEntry.COLUMN_IMPORT_ROWS_READ,
+                getIntQueryParameter(uri, ImportEntry.QUERY_PARAMETER_ROWS_READ));
+        checkpoint.put(ImportEntry.COLUMN_IMPORT_IMPORTED,
+                getIntQueryParameter(uri, ImportEntry.QUERY_PARAMETER_IMPORTED));
+        checkpoint.put(ImportEntry.COLUMN_IMPORT_REJECTED,
+                getIntQueryParameter(uri, ImportEntry.QUERY_PARAMETER_REJECTED));
+        return checkpoint;
+    }
 
-        // Notify all listeners that the data has changed for the product content URI
-        getContext().getContentResolver().notifyChange(uri, null);
+    /**
+     * Return the value of the given integer query parameter of the URI.
+     */
+    private static int getIntQueryParameter(Uri uri, String name) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name + " in " + uri);
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in " + uri, e);
+        }
+    }
 
-        // Return the new URI with the ID (of the newly inserted row) appended at the end
-        return ContentUris.withAppendedId(uri, id);
+    /**
+     * Bind the given (already validated) product values, with their supplier id, to the compiled
+     * {@link #SQL_INSERT_PRODUCT} statement.
+     */
+    private static void bindProductValues(SQLiteStatement statement, ContentValues values) {
+        statement.clearBindings();
+        statement.bindString(1, values.getAsString(ProductEntry.COLUMN_PRODUCT_NAME));
+        statement.bindLong(2, values.getAsInteger(ProductEntry.COLUMN_PRODUCT_PRICE));
+        statement.bindLong(3, values.getAsInteger(ProductEntry.COLUMN_PRODUCT_QUANTITY));
+        String picture = values.getAsString(ProductEntry.COLUMN_PRODUCT_PICTURE);
+        if (picture == null) {
+            statement.bindNull(4);
+        } else {
+            statement.bindString(4, picture);
+        }
+        statement.bindLong(5, values.getAsLong(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID));
+        Integer reorderThreshold = values.getAsInteger(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
+        statement.bindLong(6, reorderThreshold == null ? 0 : reorderThreshold);
     }
 
     @Override
     public int update(Uri uri, ContentValues contentValues, String selection,
                       String[] selectionArgs) {
+        long start = System.nanoTime();
         final int match = sUriMatcher.match(uri);
+        int rows = -1;
+        try {
+            rows = update(match, uri, contentValues, selection, selectionArgs);
+            return rows;
+        } finally {
+            record(ProviderMetrics.OPERATION_UPDATE, match, start, rows, null, selection, selectionArgs);
+        }
+    }
+
+    /**
+     * Update the rows at the given URI, which matched the given code.
+     */
+    private int update(int match, Uri uri, ContentValues contentValues, String selection,
+                       String[] selectionArgs) {
         switch (match) {
             case PRODUCTS:
-                return updateProduct(uri, contentValues, selection, selectionArgs);
+                return updateProduct(uri, contentValues, selectProductsInView(selection), selectionArgs);
             case PRODUCT_ID:
-                selection = ProductEntry._ID + "=?";
-                selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
+                // Only update the product if it also matches the given selection, if any
+                selection = DatabaseUtils.concatenateWhere(ProductEntry._ID + "=?", selectProductsInView(selection));
+                selectionArgs = DatabaseUtils.appendSelectionArgs(
+                        new String[]{String.valueOf(ContentUris.parseId(uri))}, selectionArgs);
                 return updateProduct(uri, contentValues, selection, selectionArgs);
+            case SUPPLIERS:
+                return updateSupplier(uri, contentValues, selection, selectionArgs);
+            case SUPPLIER_ID:
+                selection = DatabaseUtils.concatenateWhere(SupplierEntry._ID + "=?", selection);
+                selectionArgs = DatabaseUtils.appendSelectionArgs(
+                        new String[]{String.valueOf(ContentUris.parseId(uri))}, selectionArgs);
+                return updateSupplier(uri, contentValues, selection, selectionArgs);
             default:
                 throw new IllegalArgumentException("Update is not supported for " + uri);
         }
@@ -239,6 +1068,19 @@ public class InventoryProvider extends ContentProvider {
             }
         }
 
+        // A supplier given by name must also be given by mail, and the other way round
+        boolean changesSupplier = values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER)
+                || values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL);
+        if (changesSupplier && !(values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER)
+                && values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL))) {
+            throw new IllegalArgumentException("Product supplier requires both a name and a mail");
+        }
+        changesSupplier |= values.containsKey(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID);
+
+        // Check that the reorder threshold is valid
+        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD)) {
+            checkReorderThreshold(values);
+        }
 
         // No need to check the picture, any value is valid (including null).
 
@@ -247,64 +1089,637 @@ public class InventoryProvider extends ContentProvider {
             return 0;
         }
 
+        // The downscaled copies of a replaced picture are stale until they are generated again
+        if (values.containsKey(ProductEntry.COLUMN_PRODUCT_PICTURE)
+                && !values.containsKey(ProductEntry.COLUMN_PRODUCT_THUMBNAIL)) {
+            values = new ContentValues(values);
+            values.putNull(ProductEntry.COLUMN_PRODUCT_THUMBNAIL);
+            values.putNull(ProductEntry.COLUMN_PRODUCT_PREVIEW);
+        }
+
         // Otherwise, get writeable database to update the data
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
-        // Perform the update on the database and get the number of rows affected
-        int rowsUpdated = database.update(ProductEntry.TABLE_NAME, values, selection, selectionArgs);
+        // Perform the update on the database and get the number of rows affected, along with
+        // the creation of the new supplier, if any. Only updates that change the stock need to
+        // look for products running low.
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            ContentValues productValues = withSupplierId(database, values, null);
+            if (values.containsKey(ProductEntry.COLUMN_PRODUCT_QUANTITY)
+                    || values.containsKey(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD)) {
+                rowsUpdated = updateProductStock(database, productValues, selection, selectionArgs);
+            } else {
+                rowsUpdated = database.update(ProductEntry.TABLE_NAME, productValues, selection, selectionArgs);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
         // If 1 or more rows were updated, then notify all listeners that the data at the
-        // given URI has changed
+        // given URI has changed. The lists of products only change if several products were
+        // updated at once, or if a product was renamed or changed supplier.
         if (rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
+            if (sUriMatcher.match(uri) != PRODUCT_ID
+                    || values.containsKey(ProductEntry.COLUMN_PRODUCT_NAME)
+                    || changesSupplier) {
+                notifyChange(ProductEntry.CONTENT_LIST_NOTIFICATION_URI);
+            }
+            if (changesSupplier) {
+                notifyChange(SupplierEntry.CONTENT_URI);
+            }
         }
 
         // Return the number of rows updated
         return rowsUpdated;
     }
 
+    /**
+     * Update the stock of the products matching the given selection, and alert about the ones
+     * that fall to or below their reorder threshold. Only the updated products are checked, in the
+     * same transaction as the update. Return the number of rows updated.
+     */
+    private int updateProductStock(SQLiteDatabase database, ContentValues values, String selection,
+                                   String[] selectionArgs) {
+        List<LowStockAlerts.Alert> alerts = new ArrayList<>();
+        int rowsUpdated;
+        database.beginTransaction();
+        try {
+            // Products already running low have been alerted about before. The others are
+            // recorded before the update, which may change the columns the selection tests.
+            database.execSQL(SQL_CREATE_STOCKED_PRODUCTS);
+            database.delete(TABLE_NAME_STOCKED_PRODUCTS, null, null);
+            database.execSQL("INSERT INTO " + TABLE_NAME_STOCKED_PRODUCTS + " SELECT " + ProductEntry._ID
+                            + " FROM " + ProductEntry.TABLE_NAME + " WHERE "
+                            + DatabaseUtils.concatenateWhere(selection, "NOT (" + ProductEntry.LOW_STOCK_SELECTION + ")"),
+                    selectionArgs != null ? selectionArgs : new String[0]);
+
+            rowsUpdated = database.update(ProductEntry.TABLE_NAME, values, selection, selectionArgs);
+
+            // Alert about the ones the update left running low
+            Cursor cursor = database.query(ProductEntry.TABLE_NAME, new String[]{ProductEntry._ID,
+                            ProductEntry.COLUMN_PRODUCT_NAME, ProductEntry.COLUMN_PRODUCT_QUANTITY,
+                            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD},
+                    STOCKED_PRODUCTS_SELECTION + " AND " + ProductEntry.LOW_STOCK_SELECTION,
+                    null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    alerts.add(new LowStockAlerts.Alert(cursor.getLong(0), cursor.getString(1),
+                            cursor.getInt(2), cursor.getInt(3)));
+                }
+            } finally {
+                cursor.close();
+            }
+            database.delete(TABLE_NAME_STOCKED_PRODUCTS, null, null);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        for (LowStockAlerts.Alert alert : alerts) {
+            showAlert(alert);
+        }
+        return rowsUpdated;
+    }
+
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
+        long start = System.nanoTime();
+        final int match = sUriMatcher.match(uri);
+        int rows = -1;
+        try {
+            rows = delete(match, uri, selection, selectionArgs);
+            return rows;
+        } finally {
+            record(ProviderMetrics.OPERATION_DELETE, match, start, rows, null, selection, selectionArgs);
+        }
+    }
+
+    /**
+     * Delete the rows at the given URI, which matched the given code.
+     */
+    private int delete(int match, Uri uri, String selection, String[] selectionArgs) {
         // Get writeable database
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
 
         // Track the number of rows that were deleted
         int rowsDeleted;
 
-        final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
                 // Delete all rows that match the selection and selection args
-                rowsDeleted = database.delete(ProductEntry.TABLE_NAME, selection, selectionArgs);
+                rowsDeleted = deleteProducts(database, selectProductsInView(selection), selectionArgs);
                 break;
             case PRODUCT_ID:
                 // Delete a single row given by the ID in the URI
                 selection = ProductEntry._ID + "=?";
                 selectionArgs = new String[]{String.valueOf(ContentUris.parseId(uri))};
-                rowsDeleted = database.delete(ProductEntry.TABLE_NAME, selection, selectionArgs);
+                rowsDeleted = deleteProducts(database, selection, selectionArgs);
                 break;
+            case SUPPLIERS:
+            case SUPPLIER_ID:
+                return deleteSupplier(uri, selection, selectionArgs);
+            case IMPORTS:
+                // Nothing observes the checkpoints of the imports
+                return database.delete(ImportEntry.TABLE_NAME, selection, selectionArgs);
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
 
         // If 1 or more rows were deleted, then notify all listeners that the data at the
-        // given URI has changed
+        // given URI, and the lists of products, have changed
         if (rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            notifyChange(uri);
+            notifyChange(ProductEntry.CONTENT_LIST_NOTIFICATION_URI);
         }
 
         // Return the number of rows deleted
         return rowsDeleted;
     }
 
+    /**
+     * Delete the products matching the given selection, and their stored pictures and generated
+     * images once the deletion is committed. Return the number of rows deleted.
+     */
+    private int deleteProducts(SQLiteDatabase database, String selection, String[] selectionArgs) {
+        long[] ids;
+        int rowsDeleted;
+        database.beginTransaction();
+        try {
+            // Read the ids of the products in the same transaction, so that no other product
+            // is deleted without its files
+            Cursor cursor = database.query(ProductEntry.TABLE_NAME, new String[]{ProductEntry._ID},
+                    selection, selectionArgs, null, null, null);
+            try {
+                ids = new long[cursor.getCount()];
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    ids[i] = cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+            rowsDeleted = database.delete(ProductEntry.TABLE_NAME, selection, selectionArgs);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        List<long[]> pendingDeletedProducts = mPendingDeletedProducts.get();
+        if (pendingDeletedProducts != null) {
+            pendingDeletedProducts.add(ids);
+        } else {
+            ProductImages.deleteFiles(getContext(), ids);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Insert a supplier into the database with the given content values. Return the new content
+     * URI for that specific row in the database.
+     */
+    private Uri insertSupplier(Uri uri, ContentValues values) {
+        // Check that the name and the mail are not null
+        if (values.getAsString(SupplierEntry.COLUMN_SUPPLIER_NAME) == null) {
+            throw new IllegalArgumentException("Supplier requires a name");
+        }
+        if (values.getAsString(SupplierEntry.COLUMN_SUPPLIER_MAIL) == null) {
+            throw new IllegalArgumentException("Supplier requires a mail");
+        }
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Insert the new supplier, which fails if one with the same name and mail exists
+        long id = database.insert(SupplierEntry.TABLE_NAME, null, values);
+        if (id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        Uri newUri = ContentUris.withAppendedId(uri, id);
+        notifyChange(newUri);
+        return newUri;
+    }
+
+    /**
+     * Update suppliers in the database with the given content values. Renaming a supplier only
+     * updates its own row, but the products of the supplier change too.
+     * Return the number of rows that were successfully updated.
+     */
+    private int updateSupplier(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        // Check that the name and the mail are not null
+        if (values.containsKey(SupplierEntry.COLUMN_SUPPLIER_NAME)
+                && values.getAsString(SupplierEntry.COLUMN_SUPPLIER_NAME) == null) {
+            throw new IllegalArgumentException("Supplier requires a name");
+        }
+        if (values.containsKey(SupplierEntry.COLUMN_SUPPLIER_MAIL)
+                && values.getAsString(SupplierEntry.COLUMN_SUPPLIER_MAIL) == null) {
+            throw new IllegalArgumentException("Supplier requires a mail");
+        }
+
+        // If there are no values to update, then don't try to update the database
+        if (values.size() == 0) {
+            return 0;
+        }
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsUpdated = database.update(SupplierEntry.TABLE_NAME, values, selection, selectionArgs);
+
+        // The products show the name and mail of their supplier, and can be searched by it
+        if (rowsUpdated != 0) {
+            notifyChange(uri);
+            notifyChange(ProductEntry.CONTENT_URI);
+            notifyChange(ProductEntry.CONTENT_LIST_NOTIFICATION_URI);
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Delete the suppliers matching the given selection, but only the ones without products.
+     * Return the number of rows deleted.
+     */
+    private int deleteSupplier(Uri uri, String selection, String[] selectionArgs) {
+        if (sUriMatcher.match(uri) == SUPPLIER_ID) {
+            selection = DatabaseUtils.concatenateWhere(SupplierEntry._ID + "=?", selection);
+            selectionArgs = DatabaseUtils.appendSelectionArgs(
+                    new String[]{String.valueOf(ContentUris.parseId(uri))}, selectionArgs);
+        }
+        selection = DatabaseUtils.concatenateWhere(selection, UNUSED_SUPPLIER_SELECTION);
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+        int rowsDeleted = database.delete(SupplierEntry.TABLE_NAME, selection, selectionArgs);
+        if (rowsDeleted != 0) {
+            notifyChange(uri);
+        }
+        return rowsDeleted;
+    }
+
+    /**
+     * Apply all the given operations inside a database transaction. Every
+     * {@link #BATCH_YIELD_INTERVAL} operations, as well as before every operation built with
+     * {@link ContentProviderOperation.Builder#withYieldAllowed}, the transaction yields to waiting
+     * readers if there are any, which commits the operations applied so far. So if an operation
+     * fails, only the operations since the last yield are rolled back; the batch is all or
+     * nothing only if it never yielded. The change notifications, low stock alerts and deletions
+     * of picture files are held back until the operations they belong to are committed, at a
+     * yield or at the end of the batch, and then sent once per affected URI.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Hold back the notifications and alerts of the individual operations
+        Set<Uri> pendingNotifications = new LinkedHashSet<>();
+        mPendingNotifications.set(pendingNotifications);
+        List<LowStockAlerts.Alert> pendingAlerts = new ArrayList<>();
+        mPendingAlerts.set(pendingAlerts);
+        List<long[]> pendingDeletedProducts = new ArrayList<>();
+        mPendingDeletedProducts.set(pendingDeletedProducts);
+
+        ContentProviderResult[] results = new ContentProviderResult[operations.size()];
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                ContentProviderOperation operation = operations.get(i);
+                // Let readers in from time to time, so long batches don't starve them
+                if (i > 0 && (operation.isYieldAllowed() || i % BATCH_YIELD_INTERVAL == 0)
+                        && database.yieldIfContendedSafely(BATCH_YIELD_SLEEP_MS)) {
+                    // Yielding committed the operations applied so far
+                    sendPending(pendingNotifications, pendingAlerts, pendingDeletedProducts);
+                }
+                results[i] = operation.apply(this, results, i);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mPendingNotifications.remove();
+            mPendingAlerts.remove();
+            mPendingDeletedProducts.remove();
+        }
+
+        // The batch has been committed, so notify all listeners once per affected URI
+        sendPending(pendingNotifications, pendingAlerts, pendingDeletedProducts);
+
+        return results;
+    }
+
+    /**
+     * Send the given held back change notifications and low stock alerts, and delete the files
+     * of the given deleted products, whose changes have been committed. Clear the lists.
+     */
+    private void sendPending(Set<Uri> notifications, List<LowStockAlerts.Alert> alerts,
+                             List<long[]> deletedProducts) {
+        for (Uri uri : notifications) {
+            sendChange(uri);
+        }
+        for (LowStockAlerts.Alert alert : alerts) {
+            alert.show(getContext());
+        }
+        for (long[] ids : deletedProducts) {
+            ProductImages.deleteFiles(getContext(), ids);
+        }
+        notifications.clear();
+        alerts.clear();
+        deletedProducts.clear();
+    }
+
+    /**
+     * Notify all listeners that the data at the given URI has changed. If the current thread is
+     * applying a batch, the notification is deferred until the batch is committed.
+     */
+    private void notifyChange(Uri uri) {
+        Set<Uri> pendingNotifications = mPendingNotifications.get();
+        if (pendingNotifications != null) {
+            pendingNotifications.add(uri);
+        } else {
+            sendChange(uri);
+        }
+    }
+
+    /**
+     * Notify all listeners that the committed data at the given URI has changed.
+     */
+    private void sendChange(Uri uri) {
+        // Changes are notified once committed, which is when cached rows become stale
+        invalidateRowCache(uri);
+        getContext().getContentResolver().notifyChange(uri, null);
+    }
+
+    /**
+     * Show the given low stock alert. If the current thread is applying a batch, the alert is
+     * deferred until the batch is committed.
+     */
+    private void showAlert(LowStockAlerts.Alert alert) {
+        List<LowStockAlerts.Alert> pendingAlerts = mPendingAlerts.get();
+        if (pendingAlerts != null) {
+            pendingAlerts.add(alert);
+        } else {
+            alert.show(getContext());
+        }
+    }
+
+    /**
+     * Drop the cached rows of the products changed at the given URI.
+     */
+    private void invalidateRowCache(Uri uri) {
+        if (mRowCache == null) {
+            return;
+        }
+        switch (sUriMatcher.match(uri)) {
+            case PRODUCTS:
+                mRowCache.invalidateAll();
+                break;
+            case PRODUCT_ID:
+                mRowCache.invalidate(ContentUris.parseId(uri));
+                break;
+        }
+    }
+
+    @Override
+    public Bundle call(String method, String arg, Bundle extras) {
+        switch (method) {
+            case ProductEntry.METHOD_SELL:
+                long id = Long.parseLong(arg);
+                int quantity = extras == null ? 1 : extras.getInt(ProductEntry.EXTRA_SELL_QUANTITY, 1);
+
+                Bundle result = new Bundle();
+                result.putInt(ProductEntry.COLUMN_PRODUCT_QUANTITY, sellProduct(id, quantity));
+                return result;
+            case ProductEntry.METHOD_SELL_ALL:
+                long[] ids = extras.getLongArray(ProductEntry.EXTRA_PRODUCT_IDS);
+                int[] quantities = extras.getIntArray(ProductEntry.EXTRA_SELL_QUANTITIES);
+                if (ids == null || quantities == null || ids.length != quantities.length) {
+                    throw new IllegalArgumentException("Sales require as many quantities as products");
+                }
+
+                Bundle results = new Bundle();
+                results.putIntArray(ProductEntry.EXTRA_NEW_QUANTITIES, sellProducts(ids, quantities));
+                return results;
+            case ProductEntry.METHOD_ROW_CACHE_STATS:
+                Bundle stats = new Bundle();
+                stats.putInt(ProductEntry.EXTRA_CACHE_HITS, mRowCache != null ? mRowCache.hitCount() : 0);
+                stats.putInt(ProductEntry.EXTRA_CACHE_MISSES, mRowCache != null ? mRowCache.missCount() : 0);
+                return stats;
+            default:
+                return super.call(method, arg, extras);
+        }
+    }
+
+    /**
+     * Sell the given quantity of the product with the given id. The stock check and the decrement
+     * happen in a single UPDATE statement, so concurrent sales can never be lost.
+     * Return the new quantity of the product, or {@link ProductEntry#SELL_FAILED} if the product
+     * doesn't exist or doesn't have enough stock.
+     */
+    private int sellProduct(long id, int quantity) {
+        // Check that the quantity to sell is valid
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Sale requires a valid quantity(>0)");
+        }
+
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        int newQuantity = ProductEntry.SELL_FAILED;
+        int reorderThreshold = 0;
+        String name = null;
+        database.beginTransaction();
+        try {
+            SQLiteStatement statement = database.compileStatement(SQL_SELL_PRODUCT);
+            try {
+                statement.bindLong(1, quantity);
+                statement.bindLong(2, id);
+                statement.bindLong(3, quantity);
+                // No row is updated if either the product doesn't exist or it doesn't have enough stock
+                if (statement.executeUpdateDelete() != 0) {
+                    // Read back the new stock inside the same transaction
+                    Cursor cursor = database.rawQuery(SQL_QUERY_PRODUCT_STOCK, new String[]{String.valueOf(id)});
+                    try {
+                        cursor.moveToFirst();
+                        newQuantity = cursor.getInt(0);
+                        reorderThreshold = cursor.getInt(1);
+                        name = cursor.getString(2);
+                    } finally {
+                        cursor.close();
+                    }
+                }
+            } finally {
+                statement.close();
+            }
+            // A failed sale changed nothing, so it doesn't need to roll back an enclosing transaction
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
+        // Notify all listeners that the data has changed for the product, and alert if the sale
+        // left it running low
+        if (newQuantity != ProductEntry.SELL_FAILED) {
+            notifyChange(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id));
+            if (LowStockAlerts.crossedThreshold(newQuantity + quantity, newQuantity, reorderThreshold)) {
+                showAlert(new LowStockAlerts.Alert(id, name, newQuantity, reorderThreshold));
+            }
+        }
+
+        return newQuantity;
+    }
+
+    /**
+     * Sell the given quantities of the products with the given ids, all in a single transaction
+     * with one change notification per product. Return the new quantity of every product, or
+     * {@link ProductEntry#SELL_FAILED} for the ones that couldn't be sold.
+     */
+    private int[] sellProducts(long[] ids, int[] quantities) {
+        // Get writeable database
+        SQLiteDatabase database = mDbHelper.getWritableDatabase();
+
+        // Hold back the notifications and alerts of the individual sales until they are committed
+        Set<Uri> pendingNotifications = new LinkedHashSet<>();
+        mPendingNotifications.set(pendingNotifications);
+        List<LowStockAlerts.Alert> pendingAlerts = new ArrayList<>();
+        mPendingAlerts.set(pendingAlerts);
+
+        int[] newQuantities = new int[ids.length];
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                newQuantities[i] = sellProduct(ids[i], quantities[i]);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            mPendingNotifications.remove();
+            mPendingAlerts.remove();
+        }
+
+        for (Uri uri : pendingNotifications) {
+            notifyChange(uri);
+        }
+        for (LowStockAlerts.Alert alert : pendingAlerts) {
+            showAlert(alert);
+        }
+
+        return newQuantities;
+    }
+
+    /**
+     * Open the stored picture of a product, copied into app-private storage by
+     * {@link ProductImages#store(Context, long, Uri)}. Pictures are read-only.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) != PRODUCT_PICTURE) {
+            throw new FileNotFoundException("No file at " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Pictures can only be read, not opened with mode " + mode);
+        }
+        File file = ProductImages.getPictureFile(getContext(), uri);
+        if (file == null) {
+            throw new FileNotFoundException("No picture at " + uri);
+        }
+        // Hand the file itself to the caller, which reads it without going through the provider
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    /**
+     * Record an operation on a URI that matched the given code, which started at the given
+     * {@link System#nanoTime()} and just finished, in the metrics, and in the slow operations
+     * log if it took too long.
+     *
+     * @param rows   Number of rows returned or affected, or -1 if the operation failed
+     * @param cursor Cursor returned by a query, null for the other operations
+     */
+    private void record(int operation, int match, long start, int rows, Cursor cursor,
+                        String selection, String[] selectionArgs) {
+        long nanos = System.nanoTime() - start;
+        mMetrics.record(operation, match, nanos, rows);
+        if (!mSlowQueryLog.isSlow(nanos)) {
+            return;
+        }
+        // Only the cursors of the database know their SQL, the others didn't run any
+        String sql = cursor != null ? SlowQueryLog.getSql(cursor) : getWriteSql(operation, match, selection);
+        if (sql != null) {
+            mSlowQueryLog.add(mDbHelper.getReadableDatabase(), ProviderMetrics.getOperationName(operation),
+                    sUriPatterns.get(match, "unknown"), sql, selectionArgs, rows, nanos);
+        }
+    }
+
+    /**
+     * Return the SQL explaining a write on a URI that matched the given code: the insert
+     * statement of the products, or the query selecting the rows that updates and deletes
+     * change. Null if there is none.
+     */
+    private static String getWriteSql(int operation, int match, String selection) {
+        if (operation == ProviderMetrics.OPERATION_INSERT || operation == ProviderMetrics.OPERATION_BULK_INSERT) {
+            return match == PRODUCTS ? SQL_INSERT_PRODUCT : null;
+        }
+        String table;
+        switch (match) {
+            case PRODUCTS:
+                table = ProductEntry.VIEW_NAME_WITH_SUPPLIERS;
+                break;
+            case PRODUCT_ID:
+                table = ProductEntry.VIEW_NAME_WITH_SUPPLIERS;
+                selection = DatabaseUtils.concatenateWhere(ProductEntry._ID + "=?", selection);
+                break;
+            case SUPPLIERS:
+                table = SupplierEntry.TABLE_NAME;
+                break;
+            case SUPPLIER_ID:
+                table = SupplierEntry.TABLE_NAME;
+                selection = DatabaseUtils.concatenateWhere(SupplierEntry._ID + "=?", selection);
+                break;
+            default:
+                return null;
+        }
+        return SQLiteQueryBuilder.buildQueryString(false, table, new String[]{ProductEntry._ID},
+                selection, null, null, null, null);
+    }
+
+    /**
+     * Print the metrics of the provider and its slow operations, for dumpsys.
+     */
+    @Override
+    public void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        mMetrics.dump(writer);
+        mSlowQueryLog.dump(writer);
+    }
+
     @Override
     public String getType(Uri uri) {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case PRODUCTS:
+            case PRODUCT_SEARCH:
+            case PRODUCT_LOW_STOCK:
                 return ProductEntry.CONTENT_LIST_TYPE;
             case PRODUCT_ID:
                 return ProductEntry.CONTENT_ITEM_TYPE;
+            case PRODUCT_STATS:
+                return ProductStatsEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIERS:
+                return SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ID:
+                return SupplierEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIER_PRODUCTS:
+                return ProductEntry.CONTENT_LIST_TYPE;
+            case METRICS:
+                return MetricsEntry.CONTENT_LIST_TYPE;
+            case SLOW_QUERIES:
+                return SlowQueryEntry.CONTENT_LIST_TYPE;
+            case IMPORTS:
+                return ImportEntry.CONTENT_LIST_TYPE;
+            case PRODUCT_PICTURE:
+                File file = ProductImages.getPictureFile(getContext(), uri);
+                return file != null ? ProductImages.getPictureType(file) : null;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
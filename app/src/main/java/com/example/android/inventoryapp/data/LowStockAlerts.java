@@ -0,0 +1,68 @@
+package com.example.android.inventoryapp.data;
+
+import android.app.PendingIntent;
+import android.content.ContentUris;
+import android.content.Context;
+import android.content.Intent;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+
+import com.example.android.inventoryapp.EditorActivity;
+import com.example.android.inventoryapp.R;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+/**
+ * Alerts the user when a product falls to or below its reorder threshold.
+ * {@link InventoryProvider} checks the products whose stock a write changes, and raises the
+ * alerts of the ones that crossed their threshold before the write returns.
+ */
+final class LowStockAlerts {
+
+    private LowStockAlerts() {}
+
+    /**
+     * Return true if a product with the given reorder threshold crossed it when its quantity
+     * went from oldQuantity to newQuantity.
+     */
+    static boolean crossedThreshold(int oldQuantity, int newQuantity, int reorderThreshold) {
+        return newQuantity <= reorderThreshold && oldQuantity > reorderThreshold;
+    }
+
+    /**
+     * Alert about a product that fell to or below its reorder threshold.
+     */
+    static final class Alert {
+        final long id;
+        final String name;
+        final int quantity;
+        final int reorderThreshold;
+
+        Alert(long id, String name, int quantity, int reorderThreshold) {
+            this.id = id;
+            this.name = name;
+            this.quantity = quantity;
+            this.reorderThreshold = reorderThreshold;
+        }
+
+        /**
+         * Show a notification that the product is running low, opening the product in the
+         * editor when clicked. A later alert for the same product replaces this one.
+         */
+        void show(Context context) {
+            Intent intent = new Intent(context, EditorActivity.class);
+            intent.setData(ContentUris.withAppendedId(ProductEntry.CONTENT_URI, id));
+            PendingIntent contentIntent = PendingIntent.getActivity(context, 0, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT);
+
+            NotificationCompat.Builder builder = new NotificationCompat.Builder(context)
+                    .setSmallIcon(R.mipmap.ic_launcher)
+                    .setContentTitle(context.getString(R.string.notification_low_stock_title, name))
+                    .setContentText(context.getString(R.string.notification_low_stock_text, quantity, reorderThreshold))
+                    .setContentIntent(contentIntent)
+                    .setAutoCancel(true);
+
+            // Product ids fit in an int for any realistic catalog; they only need to be distinct
+            NotificationManagerCompat.from(context).notify((int) id, builder.build());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.android.inventoryapp.data;
+
+import android.text.TextUtils;
+
+/**
+ * Immutable row of the product list, with the columns the catalog shows.
+ * Read it from a cursor with {@link ProductCursorReader#toProduct()}.
+ */
+public final class Product {
+
+    public final long id;
+    public final String name;
+    public final int price;
+    public final int quantity;
+    public final String picture;
+    public final String thumbnail;
+
+    public Product(long id, String name, int price, int quantity, String picture, String thumbnail) {
+        this.id = id;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+        this.picture = picture;
+        this.thumbnail = thumbnail;
+    }
+
+    /**
+     * Return the image to show in the list: the thumbnail if it has been generated,
+     * the picture otherwise (null if the product has no picture).
+     */
+    public String getListImage() {
+        return thumbnail != null ? thumbnail : picture;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Product)) {
+            return false;
+        }
+        Product product = (Product) o;
+        return id == product.id && price == product.price && quantity == product.quantity
+                && TextUtils.equals(name, product.name) && TextUtils.equals(picture, product.picture)
+                && TextUtils.equals(thumbnail, product.thumbnail);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (id ^ (id >>> 32));
+        result = 31 * result + (name != null ? name.hashCode() : 0);
+        result = 31 * result + price;
+        result = 31 * result + quantity;
+        result = 31 * result + (picture != null ? picture.hashCode() : 0);
+        result = 31 * result + (thumbnail != null ? thumbnail.hashCode() : 0);
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+/**
+ * Reads the columns of {@link ProductEntry} from the current row of a cursor.
+ * The column indices are resolved once, when the reader is created, so reading rows doesn't
+ * look up column names. Create one reader per cursor and move the cursor to read the other rows.
+ * <p>
+ * The getters read the current row in place. {@link #toProduct()} copies it into a new
+ * {@link Product}, one per row, for the screens that keep the rows after the cursor is gone.
+ */
+public final class ProductCursorReader {
+
+    private final Cursor mCursor;
+
+    /**
+     * Indices of the product columns in the cursor (-1 for the columns it doesn't have)
+     */
+    private final int mIdIndex;
+    private final int mNameIndex;
+    private final int mPriceIndex;
+    private final int mQuantityIndex;
+    private final int mPictureIndex;
+    private final int mThumbnailIndex;
+    private final int mPreviewIndex;
+    private final int mSupplierIndex;
+    private final int mSupplierMailIndex;
+    private final int mReorderThresholdIndex;
+
+    public ProductCursorReader(Cursor cursor) {
+        mCursor = cursor;
+        mIdIndex = cursor.getColumnIndex(ProductEntry._ID);
+        mNameIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_NAME);
+        mPriceIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PRICE);
+        mQuantityIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_QUANTITY);
+        mPictureIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PICTURE);
+        mThumbnailIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_THUMBNAIL);
+        mPreviewIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_PREVIEW);
+        mSupplierIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_SUPPLIER);
+        mSupplierMailIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL);
+        mReorderThresholdIndex = cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD);
+    }
+
+    public long getId() {
+        return mCursor.getLong(checkColumn(mIdIndex, ProductEntry._ID));
+    }
+
+    public String getName() {
+        return mCursor.getString(checkColumn(mNameIndex, ProductEntry.COLUMN_PRODUCT_NAME));
+    }
+
+    public int getPrice() {
+        return mCursor.getInt(checkColumn(mPriceIndex, ProductEntry.COLUMN_PRODUCT_PRICE));
+    }
+
+    public int getQuantity() {
+        return mCursor.getInt(checkColumn(mQuantityIndex, ProductEntry.COLUMN_PRODUCT_QUANTITY));
+    }
+
+    public String getPicture() {
+        return mCursor.getString(checkColumn(mPictureIndex, ProductEntry.COLUMN_PRODUCT_PICTURE));
+    }
+
+    public String getThumbnail() {
+        return mCursor.getString(checkColumn(mThumbnailIndex, ProductEntry.COLUMN_PRODUCT_THUMBNAIL));
+    }
+
+    public String getPreview() {
+        return mCursor.getString(checkColumn(mPreviewIndex, ProductEntry.COLUMN_PRODUCT_PREVIEW));
+    }
+
+    public String getSupplier() {
+        return mCursor.getString(checkColumn(mSupplierIndex, ProductEntry.COLUMN_PRODUCT_SUPPLIER));
+    }
+
+    public String getSupplierMail() {
+        return mCursor.getString(checkColumn(mSupplierMailIndex, ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL));
+    }
+
+    public int getReorderThreshold() {
+        return mCursor.getInt(checkColumn(mReorderThresholdIndex, ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD));
+    }
+
+    /**
+     * Read the current row as a new immutable {@link Product}.
+     */
+    public Product toProduct() {
+        return new Product(getId(), getName(), getPrice(), getQuantity(), getPicture(), getThumbnail());
+    }
+
+    /**
+     * Return the given column index, throwing an {@link IllegalStateException} if the cursor
+     * doesn't have the column.
+     */
+    private static int checkColumn(int index, String column) {
+        if (index == -1) {
+            throw new IllegalStateException("Cursor has no " + column + " column");
+        }
+        return index;
+    }
+}
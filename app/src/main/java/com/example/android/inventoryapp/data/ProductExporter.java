@@ -0,0 +1,264 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.util.JsonWriter;
+
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ProductStatsEntry;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Exports the whole catalog to a CSV or JSON document, in the columns {@link ProductImporter}
+ * reads (plus the product ids), so that an export can be imported again.
+ * <p>
+ * Products are read a page at a time through the keyset pagination of
+ * {@link InventoryProvider} and written as they are read through a buffered stream, so memory
+ * use doesn't depend on the size of the catalog, and no read transaction stays open for the
+ * whole export. All the methods do I/O and must be called on a background thread.
+ */
+public final class ProductExporter {
+
+    public static final String LOG_TAG = ProductExporter.class.getSimpleName();
+
+    /**
+     * Formats of the exported document
+     */
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_JSON = 1;
+
+    /**
+     * MIME types of the documents of each format
+     */
+    public static final String MIME_TYPE_CSV = "text/csv";
+    public static final String MIME_TYPE_JSON = "application/json";
+
+    /**
+     * Receives the progress of an export, on the exporting thread.
+     */
+    public interface ProgressListener {
+        /**
+         * @param exported Products written so far
+         * @param total    Products in the catalog when the export started
+         */
+        void onProgress(int exported, int total);
+    }
+
+    /**
+     * Number of products read per query
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * Size of the buffer between the rows and the document, in chars
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Columns of the exported products, in the order of the CSV columns
+     */
+    private static final String[] EXPORT_COLUMNS = {
+            ProductEntry._ID,
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL,
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_PRODUCT_PICTURE};
+
+    private static final int INDEX_ID = 0;
+    private static final int INDEX_NAME = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ProductExporter() {}
+
+    /**
+     * Write every product to the given document, in the given format, ordered by name.
+     * Return the number of products written. The document is left incomplete if this fails.
+     *
+     * @param signal   Cancels the export, or null
+     * @param listener Receives the progress after every page, or null
+     * @throws android.os.OperationCanceledException if the export was canceled
+     */
+    public static int exportProducts(Context context, Uri document, int format,
+                                     CancellationSignal signal, ProgressListener listener)
+            throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        int total = getProductCount(resolver);
+
+        OutputStream out = resolver.openOutputStream(document, "w");
+        if (out == null) {
+            throw new FileNotFoundException("Failed to open " + document);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF_8), BUFFER_SIZE);
+        RowWriter rowWriter = format == FORMAT_JSON ? new JsonRowWriter(writer) : new CsvRowWriter(writer);
+
+        int exported = 0;
+        try {
+            rowWriter.begin();
+            String lastName = null;
+            long lastId = 0;
+            int pageRows;
+            do {
+                Cursor cursor = resolver.query(ProductEntry.buildPageUri(PAGE_SIZE, lastName, lastId),
+                        EXPORT_COLUMNS, null, null, ProductEntry.PAGE_SORT_ORDER, signal);
+                if (cursor == null) {
+                    throw new IOException("Failed to query " + ProductEntry.CONTENT_URI);
+                }
+                pageRows = 0;
+                try {
+                    while (cursor.moveToNext()) {
+                        if (signal != null) {
+                            signal.throwIfCanceled();
+                        }
+                        rowWriter.write(cursor);
+                        pageRows++;
+                    }
+                    if (pageRows != 0) {
+                        cursor.moveToLast();
+                        lastName = cursor.getString(INDEX_NAME);
+                        lastId = cursor.getLong(INDEX_ID);
+                    }
+                } finally {
+                    cursor.close();
+                }
+
+                exported += pageRows;
+                if (listener != null) {
+                    listener.onProgress(exported, Math.max(exported, total));
+                }
+            } while (pageRows == PAGE_SIZE);
+            rowWriter.end();
+        } finally {
+            rowWriter.close();
+        }
+        return exported;
+    }
+
+    /**
+     * Return the number of products in the catalog, from the summary the provider keeps.
+     */
+    private static int getProductCount(ContentResolver resolver) {
+        Cursor cursor = resolver.query(ProductStatsEntry.CONTENT_URI,
+                new String[]{ProductStatsEntry.COLUMN_SKU_COUNT}, null, null, null);
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Writes the products of an export in a given format.
+     */
+    private interface RowWriter extends Closeable {
+        void begin() throws IOException;
+
+        /**
+         * Write the product at the current position of the cursor, over {@link #EXPORT_COLUMNS}.
+         */
+        void write(Cursor cursor) throws IOException;
+
+        void end() throws IOException;
+    }
+
+    /**
+     * Writes a header record, then one record per product.
+     */
+    private static final class CsvRowWriter implements RowWriter {
+        private final CsvWriter mWriter;
+        private final String[] mFields = new String[EXPORT_COLUMNS.length];
+
+        CsvRowWriter(Writer writer) {
+            mWriter = new CsvWriter(writer);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            mWriter.writeRecord(EXPORT_COLUMNS);
+        }
+
+        @Override
+        public void write(Cursor cursor) throws IOException {
+            for (int i = 0; i < mFields.length; i++) {
+                mFields[i] = cursor.getString(i);
+            }
+            mWriter.writeRecord(mFields);
+        }
+
+        @Override
+        public void end() throws IOException {
+            mWriter.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            mWriter.close();
+        }
+    }
+
+    /**
+     * Writes an array holding one object per product.
+     */
+    private static final class JsonRowWriter implements RowWriter {
+        private final Writer mOut;
+        private final JsonWriter mWriter;
+
+        JsonRowWriter(Writer writer) {
+            mOut = writer;
+            mWriter = new JsonWriter(writer);
+        }
+
+        @Override
+        public void begin() throws IOException {
+            mWriter.beginArray();
+        }
+
+        @Override
+        public void write(Cursor cursor) throws IOException {
+            mWriter.beginObject();
+            for (int i = 0; i < EXPORT_COLUMNS.length; i++) {
+                mWriter.name(EXPORT_COLUMNS[i]);
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        mWriter.nullValue();
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        mWriter.value(cursor.getLong(i));
+                        break;
+                    default:
+                        mWriter.value(cursor.getString(i));
+                }
+            }
+            mWriter.endObject();
+        }
+
+        @Override
+        public void end() throws IOException {
+            mWriter.endArray();
+            mWriter.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // JsonWriter refuses to close an incomplete document, which a failed export leaves
+            mOut.close();
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.example.android.inventoryapp.R;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Stores the product pictures, and generates the downscaled copies of them that the catalog and
+ * the editor show, so that they never decode full-resolution pictures. Pictures are copied from
+ * wherever the user picked them, so that loading them never depends on another app. The copies
+ * are stored in app-private storage. All the methods do I/O and must be called on a background
+ * thread.
+ */
+public final class ProductImages {
+
+    public static final String LOG_TAG = ProductImages.class.getSimpleName();
+
+    /**
+     * Directory (in the app files directory) holding the generated images
+     */
+    private static final String IMAGES_DIRECTORY = "product_images";
+
+    /**
+     * Directory (in the app files directory) holding the stored pictures
+     */
+    private static final String PICTURES_DIRECTORY = "product_pictures";
+
+    /**
+     * Maximum number of bytes copied per channel transfer
+     */
+    private static final long TRANSFER_SIZE = 1024 * 1024;
+
+    /**
+     * JPEG quality of the generated images
+     */
+    private static final int JPEG_QUALITY = 85;
+
+    private ProductImages() {}
+
+    /**
+     * Copy the given picture of the product with the given id into app-private storage, and
+     * generate its list thumbnail and editor preview. Return the values of
+     * {@link ProductEntry#COLUMN_PRODUCT_PICTURE}, {@link ProductEntry#COLUMN_PRODUCT_THUMBNAIL}
+     * and {@link ProductEntry#COLUMN_PRODUCT_PREVIEW} to record against the product, or null if
+     * the picture couldn't be read. Once they are recorded, the previous pictures and images of
+     * the product should be deleted with {@link #deletePictures(Context, long, Uri)} and
+     * {@link #deleteImages(Context, long, ContentValues)}. If they can't be recorded, they should
+     * be deleted with {@link #deleteStored(Context, ContentValues)}.
+     */
+    public static ContentValues store(Context context, long id, Uri picture) {
+        long generation = System.currentTimeMillis();
+        File file = getPictureFile(context, id, generation);
+        try {
+            copy(context, picture, file);
+        } catch (IOException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to copy " + picture, e);
+            deleteFile(file);
+            return null;
+        }
+
+        // Generate the downscaled copies from the local copy rather than the picked picture
+        ContentValues values = generate(context, id, Uri.fromFile(file));
+        if (values == null) {
+            deleteFile(file);
+            return null;
+        }
+        values.put(ProductEntry.COLUMN_PRODUCT_PICTURE, ProductEntry.buildPictureUri(id, generation).toString());
+        return values;
+    }
+
+    /**
+     * Copy the given picture to the given file, through a temporary file so that the file
+     * never holds part of a picture.
+     */
+    private static void copy(Context context, Uri picture, File file) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+
+        ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(picture, "r");
+        if (descriptor == null) {
+            throw new FileNotFoundException("Failed to open " + picture);
+        }
+        File temporaryFile = new File(directory, file.getName() + ".tmp");
+        FileInputStream stream = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+        // A file channel only transfers up to its size, which is 0 when the picture is streamed
+        // through a pipe or a socket, so read those as a stream
+        ReadableByteChannel in = descriptor.getStatSize() >= 0
+                ? stream.getChannel() : Channels.newChannel(stream);
+        try {
+            FileChannel out = new FileOutputStream(temporaryFile).getChannel();
+            try {
+                // Let the channels move the bytes, without copying them through the Java heap
+                // when the picture is a file
+                long position = 0;
+                long transferred;
+                while ((transferred = out.transferFrom(in, position, TRANSFER_SIZE)) > 0) {
+                    position += transferred;
+                }
+                out.force(false);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+
+        if (!temporaryFile.renameTo(file)) {
+            deleteFile(temporaryFile);
+            throw new IOException("Failed to create " + file);
+        }
+    }
+
+    /**
+     * Return the file of the stored picture with the given content URI, built by
+     * {@link ProductEntry#buildPictureUri(long, long)}, or null if the URI isn't valid.
+     */
+    static File getPictureFile(Context context, Uri uri) {
+        String generation = uri.getQueryParameter(ProductEntry.QUERY_PARAMETER_GENERATION);
+        if (generation == null) {
+            return null;
+        }
+        try {
+            return getPictureFile(context, Long.parseLong(uri.getPathSegments().get(1)),
+                    Long.parseLong(generation));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static File getPictureFile(Context context, long id, long generation) {
+        return new File(new File(context.getFilesDir(), PICTURES_DIRECTORY), id + "_" + generation);
+    }
+
+    /**
+     * Return the MIME type of the given stored picture, or null if it isn't a known image format.
+     * Only the header of the picture is read.
+     */
+    static String getPictureType(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        return options.outMimeType;
+    }
+
+    /**
+     * Delete the stored pictures of the product with the given id, except the one with the
+     * given content URI if it isn't null.
+     */
+    public static void deletePictures(Context context, long id, Uri keep) {
+        File[] files = new File(context.getFilesDir(), PICTURES_DIRECTORY).listFiles();
+        if (files == null) {
+            return;
+        }
+        File keptFile = keep != null ? getPictureFile(context, keep) : null;
+        String prefix = id + "_";
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && !file.equals(keptFile)) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * Delete the stored picture with the given content URI.
+     */
+    public static void deletePicture(Context context, Uri picture) {
+        File file = getPictureFile(context, picture);
+        if (file != null) {
+            deleteFile(file);
+        }
+    }
+
+    /**
+     * Delete the stored pictures and the generated images of the products with the given ids.
+     * Each directory is listed once, however many products there are.
+     */
+    public static void deleteFiles(Context context, long[] ids) {
+        if (ids.length == 0) {
+            return;
+        }
+        long[] sortedIds = ids.clone();
+        Arrays.sort(sortedIds);
+        deleteFiles(new File(context.getFilesDir(), PICTURES_DIRECTORY).listFiles(), sortedIds);
+        deleteFiles(getImagesDirectory(context).listFiles(), sortedIds);
+    }
+
+    /**
+     * Delete the given files named after a product with one of the given sorted ids.
+     */
+    private static void deleteFiles(File[] files, long[] sortedIds) {
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            int end = name.indexOf('_');
+            if (end <= 0) {
+                continue;
+            }
+            try {
+                if (Arrays.binarySearch(sortedIds, Long.parseLong(name.substring(0, end))) >= 0) {
+                    deleteFile(file);
+                }
+            } catch (NumberFormatException e) {
+                // Not a file of a product
+            }
+        }
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(LOG_TAG, "Failed to delete " + file);
+        }
+    }
+
+    /**
+     * Generate the list thumbnail and the editor preview of the given picture of the product
+     * with the given id. Return the values of {@link ProductEntry#COLUMN_PRODUCT_THUMBNAIL} and
+     * {@link ProductEntry#COLUMN_PRODUCT_PREVIEW} to record against the product, or null if the
+     * picture couldn't be read. The previous images are kept, as the product still refers to
+     * them until the new ones are recorded.
+     */
+    public static ContentValues generate(Context context, long id, Uri picture) {
+        int thumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.product_thumbnail_size);
+        int previewSize = context.getResources().getDimensionPixelSize(R.dimen.product_preview_size);
+
+        try {
+            // Decode the picture once, just large enough for the preview
+            Bitmap preview = decodeSampled(context, picture, previewSize);
+            if (preview == null) {
+                Log.e(LOG_TAG, "Failed to decode " + picture);
+                return null;
+            }
+            Bitmap thumbnail = scale(preview, thumbnailSize);
+
+            // Name the files after the time they were generated, so that image caches never
+            // mistake them for the ones they replace
+            long generation = System.currentTimeMillis();
+            File thumbnailFile = write(context, thumbnail, id + "_" + generation + "_thumbnail.jpg");
+            File previewFile = write(context, preview, id + "_" + generation + "_preview.jpg");
+
+            ContentValues values = new ContentValues();
+            values.put(ProductEntry.COLUMN_PRODUCT_THUMBNAIL, Uri.fromFile(thumbnailFile).toString());
+            values.put(ProductEntry.COLUMN_PRODUCT_PREVIEW, Uri.fromFile(previewFile).toString());
+            return values;
+        } catch (IOException | SecurityException e) {
+            Log.e(LOG_TAG, "Failed to generate images of " + picture, e);
+            return null;
+        }
+    }
+
+    /**
+     * Delete the generated images of the product with the given id, except the ones the given
+     * values returned by {@link #generate(Context, long, Uri)} refer to, if they aren't null.
+     */
+    public static void deleteImages(Context context, long id, ContentValues keep) {
+        File[] files = getImagesDirectory(context).listFiles();
+        if (files == null) {
+            return;
+        }
+        File keptThumbnail = keep != null ? getImageFile(keep, ProductEntry.COLUMN_PRODUCT_THUMBNAIL) : null;
+        File keptPreview = keep != null ? getImageFile(keep, ProductEntry.COLUMN_PRODUCT_PREVIEW) : null;
+        String prefix = id + "_";
+        for (File file : files) {
+            if (file.getName().startsWith(prefix) && !file.equals(keptThumbnail) && !file.equals(keptPreview)) {
+                deleteFile(file);
+            }
+        }
+    }
+
+    /**
+     * Delete the stored picture and the images the given values returned by
+     * {@link #store(Context, long, Uri)} refer to, which couldn't be recorded.
+     */
+    public static void deleteStored(Context context, ContentValues values) {
+        String picture = values.getAsString(ProductEntry.COLUMN_PRODUCT_PICTURE);
+        if (picture != null) {
+            deletePicture(context, Uri.parse(picture));
+        }
+        File thumbnail = getImageFile(values, ProductEntry.COLUMN_PRODUCT_THUMBNAIL);
+        if (thumbnail != null) {
+            deleteFile(thumbnail);
+        }
+        File preview = getImageFile(values, ProductEntry.COLUMN_PRODUCT_PREVIEW);
+        if (preview != null) {
+            deleteFile(preview);
+        }
+    }
+
+    /**
+     * Return the file of the generated image the given column of the values refers to, or null.
+     */
+    private static File getImageFile(ContentValues values, String column) {
+        String image = values.getAsString(column);
+        String path = image != null ? Uri.parse(image).getPath() : null;
+        return path != null ? new File(path) : null;
+    }
+
+    /**
+     * Decode the given picture with the largest power-of-two subsampling that keeps its
+     * shortest side at least size pixels long.
+     */
+    private static Bitmap decodeSampled(Context context, Uri picture, int size) throws IOException {
+        // Read the dimensions of the picture without decoding it
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        InputStream in = context.getContentResolver().openInputStream(picture);
+        try {
+            BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int shortestSide = Math.min(options.outWidth, options.outHeight);
+        options.inSampleSize = 1;
+        while (shortestSide / (options.inSampleSize * 2) >= size) {
+            options.inSampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+
+        in = context.getContentResolver().openInputStream(picture);
+        try {
+            return scale(BitmapFactory.decodeStream(in, null, options), size);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Scale the given bitmap down so that its shortest side is size pixels long.
+     */
+    private static Bitmap scale(Bitmap bitmap, int size) {
+        if (bitmap == null) {
+            return null;
+        }
+        int shortestSide = Math.min(bitmap.getWidth(), bitmap.getHeight());
+        if (shortestSide <= size) {
+            return bitmap;
+        }
+        float ratio = (float) size / shortestSide;
+        return Bitmap.createScaledBitmap(bitmap, Math.round(bitmap.getWidth() * ratio),
+                Math.round(bitmap.getHeight() * ratio), true);
+    }
+
+    /**
+     * Write the given bitmap as a JPEG file with the given name in the images directory.
+     */
+    private static File write(Context context, Bitmap bitmap, String name) throws IOException {
+        File directory = getImagesDirectory(context);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        File file = new File(directory, name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static File getImagesDirectory(Context context) {
+        return new File(context.getFilesDir(), IMAGES_DIRECTORY);
+    }
+}
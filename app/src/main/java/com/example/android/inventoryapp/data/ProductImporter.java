@@ -0,0 +1,308 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.ImportEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Imports products from a CSV document. The first record of the document names the columns,
+ * using the names of the {@link ProductEntry} columns: name, price, quantity, supplier and
+ * supplier_mail are required, reorder_threshold and picture are optional and other columns are
+ * ignored.
+ * <p>
+ * The document is read as a stream and its products are inserted in chunks of
+ * {@link #CHUNK_SIZE} rows, one transaction per chunk, so memory use doesn't depend on the size
+ * of the document. Rows failing the checks of {@link InventoryProvider} are skipped. Every chunk
+ * is committed together with the number of rows read, see {@link ImportEntry}, so that importing
+ * the same document again after an interrupted import resumes right after the last chunk
+ * inserted, without inserting any product twice. All the methods do I/O and must be called on a
+ * background thread.
+ */
+public final class ProductImporter {
+
+    public static final String LOG_TAG = ProductImporter.class.getSimpleName();
+
+    /**
+     * Receives the progress of an import, on the importing thread.
+     */
+    public interface ProgressListener {
+        /**
+         * @param bytesRead  Bytes of the document read so far
+         * @param totalBytes Size of the document in bytes, or -1 if unknown
+         * @param imported   Products imported so far
+         * @param rejected   Rows rejected so far
+         */
+        void onProgress(long bytesRead, long totalBytes, int imported, int rejected);
+    }
+
+    /**
+     * Outcome of a finished import, including the rows handled before it was resumed.
+     */
+    public static final class Result {
+        public final int imported;
+        public final int rejected;
+
+        Result(int imported, int rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+    }
+
+    /**
+     * Number of products inserted per transaction
+     */
+    private static final int CHUNK_SIZE = 500;
+
+    /**
+     * Columns a document must have
+     */
+    private static final String[] REQUIRED_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER,
+            ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL};
+
+    /**
+     * Columns a document may have
+     */
+    private static final String[] OPTIONAL_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD,
+            ProductEntry.COLUMN_PRODUCT_PICTURE};
+
+    /**
+     * Columns of the checkpoint of an import
+     */
+    private static final String[] CHECKPOINT_PROJECTION = {
+            ImportEntry.COLUMN_IMPORT_ROWS_READ,
+            ImportEntry.COLUMN_IMPORT_IMPORTED,
+            ImportEntry.COLUMN_IMPORT_REJECTED};
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private ProductImporter() {}
+
+    /**
+     * Import the products of the given CSV document, resuming the previous import of the same
+     * document if it was interrupted. Return the outcome of the import.
+     *
+     * @param listener Receives the progress after every chunk, or null
+     * @throws IOException if the document can't be read, isn't valid CSV or lacks a required
+     *                     column. The products of the chunks inserted before stay, and importing
+     *                     the document again resumes after them.
+     */
+    public static Result importProducts(Context context, Uri document, ProgressListener listener)
+            throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+
+        int rowsToSkip = 0;
+        int imported = 0;
+        int rejected = 0;
+        Cursor checkpoint = resolver.query(ImportEntry.CONTENT_URI, CHECKPOINT_PROJECTION,
+                ImportEntry.COLUMN_IMPORT_DOCUMENT + "=?", new String[]{document.toString()}, null);
+        if (checkpoint != null) {
+            try {
+                if (checkpoint.moveToFirst()) {
+                    rowsToSkip = checkpoint.getInt(0);
+                    imported = checkpoint.getInt(1);
+                    rejected = checkpoint.getInt(2);
+                    Log.i(LOG_TAG, "Resuming import of " + document + " after " + rowsToSkip + " rows");
+                }
+            } finally {
+                checkpoint.close();
+            }
+        }
+        // Only the last import can be resumed
+        resolver.delete(ImportEntry.CONTENT_URI, ImportEntry.COLUMN_IMPORT_DOCUMENT + "!=?",
+                new String[]{document.toString()});
+
+        long totalBytes = getSize(resolver, document);
+        InputStream in = resolver.openInputStream(document);
+        if (in == null) {
+            throw new FileNotFoundException("Failed to open " + document);
+        }
+        CountingInputStream counter = new CountingInputStream(in);
+        CsvReader reader = new CsvReader(new InputStreamReader(counter, UTF_8));
+        try {
+            String[] header = reader.readRecord();
+            if (header == null) {
+                deleteCheckpoint(resolver, document);
+                return new Result(0, 0);
+            }
+            int[] required = getColumnIndexes(header, REQUIRED_COLUMNS, true);
+            int[] optional = getColumnIndexes(header, OPTIONAL_COLUMNS, false);
+
+            // Skip the rows the interrupted import already handled
+            int rowsRead = 0;
+            while (rowsRead < rowsToSkip && reader.readRecord() != null) {
+                rowsRead++;
+            }
+
+            ArrayList<ContentValues> chunk = new ArrayList<>(CHUNK_SIZE);
+            String[] row;
+            while ((row = reader.readRecord()) != null) {
+                rowsRead++;
+                ContentValues values = new ContentValues();
+                putColumns(values, row, REQUIRED_COLUMNS, required);
+                putColumns(values, row, OPTIONAL_COLUMNS, optional);
+                try {
+                    InventoryProvider.checkProductValues(values);
+                    chunk.add(values);
+                } catch (IllegalArgumentException e) {
+                    // Rows are numbered from 1, after the header
+                    Log.w(LOG_TAG, "Rejected row " + rowsRead + ": " + e.getMessage());
+                    rejected++;
+                }
+
+                if (chunk.size() == CHUNK_SIZE) {
+                    imported += insertChunk(resolver, document, chunk, rowsRead, imported, rejected);
+                    if (listener != null) {
+                        listener.onProgress(counter.getCount(), totalBytes, imported, rejected);
+                    }
+                }
+            }
+            if (!chunk.isEmpty()) {
+                imported += insertChunk(resolver, document, chunk, rowsRead, imported, rejected);
+            }
+        } finally {
+            reader.close();
+        }
+
+        // The import is complete, importing the document again starts over
+        deleteCheckpoint(resolver, document);
+        if (listener != null) {
+            listener.onProgress(counter.getCount(), totalBytes, imported, rejected);
+        }
+        return new Result(imported, rejected);
+    }
+
+    /**
+     * Insert the given products of the given document in a single transaction and clear the
+     * list. The transaction also records the checkpoint of the import once they are in: the given
+     * rows read and rows rejected, and the given products imported plus the new ones. Return the
+     * number of products inserted.
+     */
+    private static int insertChunk(ContentResolver resolver, Uri document, ArrayList<ContentValues> chunk,
+                                   int rowsRead, int imported, int rejected) {
+        Uri uri = ImportEntry.buildChunkUri(document, rowsRead, imported + chunk.size(), rejected);
+        int inserted = resolver.bulkInsert(uri, chunk.toArray(new ContentValues[chunk.size()]));
+        chunk.clear();
+        return inserted;
+    }
+
+    /**
+     * Delete the checkpoint of the import of the given document.
+     */
+    private static void deleteCheckpoint(ContentResolver resolver, Uri document) {
+        resolver.delete(ImportEntry.CONTENT_URI, ImportEntry.COLUMN_IMPORT_DOCUMENT + "=?",
+                new String[]{document.toString()});
+    }
+
+    /**
+     * Return the index in the header of each of the given columns, -1 for missing ones.
+     *
+     * @throws IOException if required and one of the columns is missing
+     */
+    private static int[] getColumnIndexes(String[] header, String[] columns, boolean required)
+            throws IOException {
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            indexes[i] = -1;
+            for (int j = 0; j < header.length; j++) {
+                if (columns[i].equalsIgnoreCase(header[j].trim())) {
+                    indexes[i] = j;
+                    break;
+                }
+            }
+            if (required && indexes[i] == -1) {
+                throw new IOException("Missing column " + columns[i]);
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Put the non-empty fields of the given row at the given indexes into the values,
+     * under the given column names.
+     */
+    private static void putColumns(ContentValues values, String[] row, String[] columns, int[] indexes) {
+        for (int i = 0; i < columns.length; i++) {
+            if (indexes[i] != -1 && indexes[i] < row.length) {
+                String field = row[indexes[i]].trim();
+                if (!field.isEmpty()) {
+                    values.put(columns[i], field);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the size in bytes of the given document, or -1 if unknown.
+     */
+    private static long getSize(ContentResolver resolver, Uri document) {
+        Cursor cursor = resolver.query(document, new String[]{OpenableColumns.SIZE}, null, null, null);
+        if (cursor == null) {
+            return -1;
+        }
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0) ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Counts the bytes read from the wrapped stream, to report the progress of an import.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return mCount;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Performs all the writes to the {@link InventoryProvider} on a dedicated background thread,
+ * and delivers their results on the main thread. Writes run one at a time, in the order
+ * they were requested.
+ */
+public class ProductRepository {
+
+    public static final String LOG_TAG = ProductRepository.class.getSimpleName();
+
+    /**
+     * Receives the result of a write on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * Time (in ms) during which sales of the same product are added up before being written
+     */
+    private static final long SALE_COALESCING_WINDOW_MS = 300;
+
+    /**
+     * The single instance of the repository
+     */
+    private static ProductRepository sInstance;
+
+    /**
+     * Return the repository of the app, creating it if needed.
+     */
+    public static synchronized ProductRepository getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ProductRepository(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+
+    private final ContentResolver mContentResolver;
+
+    /**
+     * Executor running the writes, one at a time
+     */
+    private final Executor mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, LOG_TAG);
+        }
+    });
+
+    /**
+     * Executor generating the downscaled copies of the product pictures, so that decoding
+     * pictures never holds up the writes
+     */
+    private final Executor mImageExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, ProductImages.LOG_TAG);
+        }
+    });
+
+    /**
+     * Handler delivering the results on the main thread
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Units sold per product id that haven't been sent to the provider yet. Main thread only.
+     */
+    private final HashMap<Long, Integer> mPendingSales = new HashMap<>();
+
+    /**
+     * Callback of the latest coalesced sale per product id in {@link #mPendingSales}.
+     * Main thread only.
+     */
+    private final HashMap<Long, Callback<Integer>> mPendingSaleCallbacks = new HashMap<>();
+
+    /**
+     * Units sold per product id that are being written to the provider. Main thread only.
+     */
+    private final HashMap<Long, Integer> mFlushingSales = new HashMap<>();
+
+    /**
+     * Writes the pending sales once the coalescing window is over
+     */
+    private final Runnable mFlushSales = new Runnable() {
+        @Override
+        public void run() {
+            flushSales();
+        }
+    };
+
+    private ProductRepository(Context context) {
+        mContext = context;
+        mContentResolver = context.getContentResolver();
+    }
+
+    /**
+     * Insert a new product. The callback receives the content URI of the new product,
+     * or null if the insertion failed.
+     */
+    public void insert(final ContentValues values, final Callback<Uri> callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Uri newUri = null;
+                try {
+                    newUri = mContentResolver.insert(ProductEntry.CONTENT_URI, values);
+                } catch (IllegalArgumentException e) {
+                    Log.e(LOG_TAG, "Failed to insert product", e);
+                }
+                if (newUri != null) {
+                    generateImages(newUri, values);
+                }
+                deliver(callback, newUri);
+            }
+        });
+    }
+
+    /**
+     * Update the product(s) at the given content URI. The callback receives the number of
+     * rows updated.
+     */
+    public void update(final Uri uri, final ContentValues values, final Callback<Integer> callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int rowsUpdated = 0;
+                try {
+                    rowsUpdated = mContentResolver.update(uri, values, null, null);
+                } catch (IllegalArgumentException e) {
+                    Log.e(LOG_TAG, "Failed to update " + uri, e);
+                }
+                if (rowsUpdated != 0) {
+                    generateImages(uri, values);
+                }
+                deliver(callback, rowsUpdated);
+            }
+        });
+    }
+
+    /**
+     * Delete the product(s) at the given content URI. The provider deletes their pictures.
+     * The callback receives the number of rows deleted.
+     */
+    public void delete(final Uri uri, final Callback<Integer> callback) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                int rowsDeleted = 0;
+                try {
+                    rowsDeleted = mContentResolver.delete(uri, null, null);
+                } catch (IllegalArgumentException e) {
+                    Log.e(LOG_TAG, "Failed to delete " + uri, e);
+                }
+                deliver(callback, rowsDeleted);
+            }
+        });
+    }
+
+    /**
+     * If the given values set the picture of the product with the given content URI, copy it
+     * into app-private storage and generate its downscaled copies in the background, and
+     * record them against the product.
+     */
+    private void generateImages(final Uri uri, ContentValues values) {
+        final String picture = values.getAsString(ProductEntry.COLUMN_PRODUCT_PICTURE);
+        if (picture == null || picture.isEmpty() || !isProductUri(uri)) {
+            return;
+        }
+        mImageExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                long id = ContentUris.parseId(uri);
+                ContentValues images = ProductImages.store(mContext, id, Uri.parse(picture));
+                if (images == null) {
+                    return;
+                }
+                Uri storedPicture = Uri.parse(images.getAsString(ProductEntry.COLUMN_PRODUCT_PICTURE));
+                int rowsUpdated = 0;
+                try {
+                    // Only record the images if the picture hasn't been replaced in the meantime
+                    rowsUpdated = mContentResolver.update(uri, images,
+                            ProductEntry.COLUMN_PRODUCT_PICTURE + "=?", new String[]{picture});
+                } catch (IllegalArgumentException e) {
+                    Log.e(LOG_TAG, "Failed to record images of " + uri, e);
+                }
+                // Keep the new picture and images only if the product now refers to them, and
+                // the previous ones only if it still does
+                if (rowsUpdated != 0) {
+                    ProductImages.deletePictures(mContext, id, storedPicture);
+                    ProductImages.deleteImages(mContext, id, images);
+                } else {
+                    ProductImages.deleteStored(mContext, images);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return true if the given URI is the content URI of a single product.
+     */
+    private static boolean isProductUri(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 2 && InventoryContract.PATH_PRODUCTS.equals(segments.get(0))
+                && TextUtils.isDigitsOnly(segments.get(1));
+    }
+
+    /**
+     * Sell one unit of the product with the given id, together with the other sales made within
+     * the next {@link #SALE_COALESCING_WINDOW_MS}: all of them are written as one update per
+     * product, in a single transaction. The callback receives the new quantity of the product,
+     * or {@link ProductEntry#SELL_FAILED} if there wasn't enough stock for all the units sold
+     * within the window. Must be called on the main thread.
+     */
+    public void sellCoalesced(long id, Callback<Integer> callback) {
+        if (mPendingSales.isEmpty()) {
+            mMainHandler.postDelayed(mFlushSales, SALE_COALESCING_WINDOW_MS);
+        }
+        addSales(mPendingSales, id, 1);
+        if (callback != null) {
+            mPendingSaleCallbacks.put(id, callback);
+        }
+    }
+
+    /**
+     * Return the number of units of the product with the given id that were sold with
+     * {@link #sellCoalesced(long, Callback)} and haven't been written yet, so the UI can show
+     * the quantity the product will have. Must be called on the main thread.
+     */
+    public int getUnwrittenSales(long id) {
+        Integer pending = mPendingSales.get(id);
+        Integer flushing = mFlushingSales.get(id);
+        return (pending == null ? 0 : pending) + (flushing == null ? 0 : flushing);
+    }
+
+    /**
+     * Write all the pending sales in a single provider call.
+     */
+    private void flushSales() {
+        final int count = mPendingSales.size();
+        final long[] ids = new long[count];
+        final int[] quantities = new int[count];
+        final Callback<?>[] callbacks = new Callback<?>[count];
+        int i = 0;
+        for (Map.Entry<Long, Integer> sale : mPendingSales.entrySet()) {
+            ids[i] = sale.getKey();
+            quantities[i] = sale.getValue();
+            callbacks[i] = mPendingSaleCallbacks.get(sale.getKey());
+            addSales(mFlushingSales, ids[i], quantities[i]);
+            i++;
+        }
+        mPendingSales.clear();
+        mPendingSaleCallbacks.clear();
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] newQuantities = sellAllNow(ids, quantities);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public void run() {
+                        for (int i = 0; i < count; i++) {
+                            addSales(mFlushingSales, ids[i], -quantities[i]);
+                            if (callbacks[i] != null) {
+                                ((Callback<Integer>) callbacks[i]).onResult(newQuantities[i]);
+                            }
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Add the given units to the sales of the product with the given id, removing the
+     * product once it has no units left.
+     */
+    private static void addSales(HashMap<Long, Integer> sales, long id, int quantity) {
+        Integer current = sales.get(id);
+        int total = (current == null ? 0 : current) + quantity;
+        if (total == 0) {
+            sales.remove(id);
+        } else {
+            sales.put(id, total);
+        }
+    }
+
+    /**
+     * Sell the given quantities of the products with the given ids on the calling thread.
+     * Return the new quantities, with {@link ProductEntry#SELL_FAILED} for failed sales.
+     */
+    private int[] sellAllNow(long[] ids, int[] quantities) {
+        Bundle extras = new Bundle();
+        extras.putLongArray(ProductEntry.EXTRA_PRODUCT_IDS, ids);
+        extras.putIntArray(ProductEntry.EXTRA_SELL_QUANTITIES, quantities);
+        int[] newQuantities = null;
+        try {
+            Bundle result = mContentResolver.call(ProductEntry.CONTENT_URI,
+                    ProductEntry.METHOD_SELL_ALL, null, extras);
+            if (result != null) {
+                newQuantities = result.getIntArray(ProductEntry.EXTRA_NEW_QUANTITIES);
+            }
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Failed to sell products", e);
+        }
+        if (newQuantities == null) {
+            newQuantities = new int[ids.length];
+            Arrays.fill(newQuantities, ProductEntry.SELL_FAILED);
+        }
+        return newQuantities;
+    }
+
+    /**
+     * Post the given result to the callback on the main thread, if there is a callback.
+     */
+    private <T> void deliver(final Callback<T> callback, final T result) {
+        if (callback == null) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                callback.onResult(result);
+            }
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.LruCache;
+
+/**
+ * Bounded LRU cache of whole product rows, keyed by product id, used by {@link InventoryProvider}
+ * to answer single-product queries without reading the database.
+ * <p>
+ * A row read from the database is only cached if no product changed while it was being read, so
+ * a read racing with a write can never put a stale row back after the write invalidated it.
+ */
+final class ProductRowCache {
+
+    /**
+     * Values of a product row, in the order of the columns of the table
+     */
+    private static final class Row {
+        final String[] columns;
+        final Object[] values;
+
+        Row(String[] columns, Object[] values) {
+            this.columns = columns;
+            this.values = values;
+        }
+    }
+
+    private final LruCache<Long, Row> mRows;
+
+    /**
+     * Number of invalidations so far, guarded by {@link #mRows}
+     */
+    private long mVersion;
+
+    /**
+     * Constructs a new {@link ProductRowCache} holding at most maxRows rows (>0).
+     */
+    ProductRowCache(int maxRows) {
+        mRows = new LruCache<>(maxRows);
+    }
+
+    /**
+     * Return a token to pass to {@link #put(long, Cursor, long, String[])} once the row has been read.
+     * Must be called before reading the row from the database.
+     */
+    long startRead() {
+        synchronized (mRows) {
+            return mVersion;
+        }
+    }
+
+    /**
+     * Return a cursor over the given columns (all of them if null) of the cached product with
+     * the given id, or null if it isn't cached or one of the columns isn't a column of the table.
+     */
+    Cursor get(long id, String[] projection) {
+        Row row = mRows.get(id);
+        return row != null ? project(row, projection) : null;
+    }
+
+    /**
+     * Return a cursor over the given columns (all of them if null) of the given row, or null if
+     * one of the columns isn't a column of the table.
+     */
+    private static Cursor project(Row row, String[] projection) {
+        String[] columns = projection != null ? projection : row.columns;
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            int index = indexOf(row.columns, columns[i]);
+            if (index == -1) {
+                // Expressions and unknown columns are left to SQLite
+                return null;
+            }
+            values[i] = row.values[index];
+        }
+
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        cursor.addRow(values);
+        return cursor;
+    }
+
+    /**
+     * Cache the current row of the given cursor, read with all the columns of the table, unless
+     * a product was invalidated since {@link #startRead()} returned the given token. Return a
+     * cursor over the given columns of the row, as {@link #get(long, String[])} does.
+     */
+    Cursor put(long id, Cursor cursor, long token, String[] projection) {
+        String[] columns = cursor.getColumnNames();
+        Object[] values = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values[i] = cursor.getLong(i);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values[i] = cursor.getDouble(i);
+                    break;
+                case Cursor.FIELD_TYPE_STRING:
+                    values[i] = cursor.getString(i);
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    values[i] = cursor.getBlob(i);
+                    break;
+                default:
+                    values[i] = null;
+            }
+        }
+
+        Row row = new Row(columns, values);
+        synchronized (mRows) {
+            if (token == mVersion) {
+                mRows.put(id, row);
+            }
+        }
+        return project(row, projection);
+    }
+
+    /**
+     * Drop the cached row of the product with the given id.
+     */
+    void invalidate(long id) {
+        synchronized (mRows) {
+            mVersion++;
+            mRows.remove(id);
+        }
+    }
+
+    /**
+     * Drop all the cached rows.
+     */
+    void invalidateAll() {
+        synchronized (mRows) {
+            mVersion++;
+            mRows.evictAll();
+        }
+    }
+
+    /**
+     * Return the number of lookups that found their product in the cache.
+     */
+    int hitCount() {
+        return mRows.hitCount();
+    }
+
+    /**
+     * Return the number of lookups that didn't find their product in the cache.
+     */
+    int missCount() {
+        return mRows.missCount();
+    }
+
+    private static int indexOf(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.SparseArray;
+
+import com.example.android.inventoryapp.data.InventoryContract.MetricsEntry;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms of the operations of {@link InventoryProvider}, per operation
+ * and per URI pattern. Recording an operation only takes a few atomic increments and never
+ * allocates, so metrics are always on.
+ */
+final class ProviderMetrics {
+
+    /**
+     * Operations of the provider
+     */
+    static final int OPERATION_QUERY = 0;
+    static final int OPERATION_INSERT = 1;
+    static final int OPERATION_BULK_INSERT = 2;
+    static final int OPERATION_UPDATE = 3;
+    static final int OPERATION_DELETE = 4;
+
+    private static final String[] OPERATION_NAMES = {"query", "insert", "bulk_insert", "update", "delete"};
+
+    /**
+     * Pattern reported for the URIs that didn't match any pattern
+     */
+    private static final String UNKNOWN_PATTERN = "unknown";
+
+    /**
+     * Number of buckets of the latency histograms. Bucket i counts the latencies under 2^i
+     * microseconds that don't fit in the previous buckets, the last one counts all the others
+     * (latencies of 2s and above).
+     */
+    private static final int BUCKET_COUNT = 23;
+
+    /**
+     * Metrics of one operation on one URI pattern.
+     */
+    private static final class Entry {
+        final String pattern;
+        final String operation;
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+        Entry(String pattern, String operation) {
+            this.pattern = pattern;
+            this.operation = operation;
+        }
+
+        void record(long nanos, int rowCount) {
+            count.incrementAndGet();
+            if (rowCount < 0) {
+                errors.incrementAndGet();
+            } else {
+                rows.addAndGet(rowCount);
+            }
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+            long micros = nanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+        }
+
+        /**
+         * Return an upper bound of the given percentile of the latencies, in microseconds:
+         * the upper bound of the bucket holding it, or the maximum latency if lower.
+         */
+        long percentileMicros(long total, double percentile) {
+            long maxMicros = maxNanos.get() / 1000;
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long cumulated = 0;
+            for (int i = 0; i < BUCKET_COUNT - 1; i++) {
+                cumulated += buckets.get(i);
+                if (cumulated >= rank) {
+                    return Math.min(1L << i, maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+    }
+
+    /**
+     * Entries per URI matcher code, one per operation. Never modified after construction, so
+     * they can be read from any thread.
+     */
+    private final SparseArray<Entry[]> mEntries = new SparseArray<>();
+
+    /**
+     * Entries of the URIs that didn't match any pattern
+     */
+    private final Entry[] mUnknownEntries;
+
+    /**
+     * Constructs a new {@link ProviderMetrics} for the given URI patterns, by URI matcher code.
+     */
+    ProviderMetrics(SparseArray<String> patterns) {
+        for (int i = 0; i < patterns.size(); i++) {
+            mEntries.put(patterns.keyAt(i), createEntries(patterns.valueAt(i)));
+        }
+        mUnknownEntries = createEntries(UNKNOWN_PATTERN);
+    }
+
+    private static Entry[] createEntries(String pattern) {
+        Entry[] entries = new Entry[OPERATION_NAMES.length];
+        for (int i = 0; i < entries.length; i++) {
+            entries[i] = new Entry(pattern, OPERATION_NAMES[i]);
+        }
+        return entries;
+    }
+
+    /**
+     * Return the name of the given operation.
+     */
+    static String getOperationName(int operation) {
+        return OPERATION_NAMES[operation];
+    }
+
+    /**
+     * Record an operation on a URI that matched the given code, which took the given time.
+     *
+     * @param rows Number of rows returned or affected, or -1 if the operation failed
+     */
+    void record(int operation, int match, long nanos, int rows) {
+        Entry[] entries = mEntries.get(match, mUnknownEntries);
+        entries[operation].record(nanos, rows);
+    }
+
+    /**
+     * Return a cursor over the metrics of the operations that ran at least once, with the
+     * columns of {@link MetricsEntry}.
+     */
+    Cursor toCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                MetricsEntry.COLUMN_PATTERN,
+                MetricsEntry.COLUMN_OPERATION,
+                MetricsEntry.COLUMN_COUNT,
+                MetricsEntry.COLUMN_ERRORS,
+                MetricsEntry.COLUMN_ROWS,
+                MetricsEntry.COLUMN_MEAN_US,
+                MetricsEntry.COLUMN_P50_US,
+                MetricsEntry.COLUMN_P90_US,
+                MetricsEntry.COLUMN_P99_US,
+                MetricsEntry.COLUMN_MAX_US});
+        for (Entry[] entries : allEntries()) {
+            for (Entry entry : entries) {
+                long count = entry.count.get();
+                if (count == 0) {
+                    continue;
+                }
+                cursor.addRow(new Object[]{entry.pattern, entry.operation, count,
+                        entry.errors.get(), entry.rows.get(),
+                        entry.totalNanos.get() / 1000 / count,
+                        entry.percentileMicros(count, 50),
+                        entry.percentileMicros(count, 90),
+                        entry.percentileMicros(count, 99),
+                        entry.maxNanos.get() / 1000});
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Print the metrics of the operations that ran at least once, one per line.
+     */
+    void dump(PrintWriter writer) {
+        writer.println("Operations (latencies in us, percentiles are upper bounds):");
+        for (Entry[] entries : allEntries()) {
+            for (Entry entry : entries) {
+                long count = entry.count.get();
+                if (count == 0) {
+                    continue;
+                }
+                writer.println(String.format(Locale.US,
+                        "  %-8s %-24s count=%d errors=%d rows=%d mean=%d p50=%d p90=%d p99=%d max=%d",
+                        entry.operation, entry.pattern, count, entry.errors.get(), entry.rows.get(),
+                        entry.totalNanos.get() / 1000 / count,
+                        entry.percentileMicros(count, 50),
+                        entry.percentileMicros(count, 90),
+                        entry.percentileMicros(count, 99),
+                        entry.maxNanos.get() / 1000));
+            }
+        }
+    }
+
+    private Entry[][] allEntries() {
+        Entry[][] all = new Entry[mEntries.size() + 1][];
+        for (int i = 0; i < mEntries.size(); i++) {
+            all[i] = mEntries.valueAt(i);
+        }
+        all[mEntries.size()] = mUnknownEntries;
+        return all;
+    }
+}
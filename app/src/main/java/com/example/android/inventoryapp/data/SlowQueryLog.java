@@ -0,0 +1,231 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteQuery;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.android.inventoryapp.data.InventoryContract.SlowQueryEntry;
+
+import java.io.PrintWriter;
+
+/**
+ * Bounded log of the operations of {@link InventoryProvider} that took longer than a threshold,
+ * along with the SQL they ran and how SQLite executed it ({@code EXPLAIN QUERY PLAN}), to find
+ * the selections that miss the indexes. Once full, new entries replace the oldest ones.
+ */
+final class SlowQueryLog {
+
+    private static final String LOG_TAG = SlowQueryLog.class.getSimpleName();
+
+    /**
+     * Prefix of the description of a {@link SQLiteQuery}, followed by its SQL
+     */
+    private static final String QUERY_DESCRIPTION_PREFIX = "SQLiteQuery: ";
+
+    /**
+     * Creates cursors that remember the SQL of their query, see {@link #getSql(Cursor)}.
+     */
+    static final SQLiteDatabase.CursorFactory CURSOR_FACTORY = new SQLiteDatabase.CursorFactory() {
+        @Override
+        public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable,
+                                SQLiteQuery query) {
+            return new StatementCursor(driver, editTable, query);
+        }
+    };
+
+    /**
+     * Cursor over the rows of a query, which remembers the SQL of the query.
+     */
+    private static final class StatementCursor extends SQLiteCursor {
+        final String sql;
+
+        StatementCursor(SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+            super(driver, editTable, query);
+            // The SQL is only exposed through the description of the query
+            String description = query.toString();
+            sql = description.startsWith(QUERY_DESCRIPTION_PREFIX)
+                    ? description.substring(QUERY_DESCRIPTION_PREFIX.length()) : description;
+        }
+    }
+
+    /**
+     * A slow operation.
+     */
+    private static final class Entry {
+        final long time;
+        final String operation;
+        final String pattern;
+        final String sql;
+        final String arguments;
+        final int rows;
+        final long durationMicros;
+        final String plan;
+
+        Entry(long time, String operation, String pattern, String sql, String arguments, int rows,
+              long durationMicros, String plan) {
+            this.time = time;
+            this.operation = operation;
+            this.pattern = pattern;
+            this.sql = sql;
+            this.arguments = arguments;
+            this.rows = rows;
+            this.durationMicros = durationMicros;
+            this.plan = plan;
+        }
+    }
+
+    private final long mThresholdNanos;
+
+    /**
+     * Ring buffer of the entries, guarded by itself. The next entry goes at {@link #mNext}.
+     */
+    private final Entry[] mEntries;
+    private int mNext;
+    private int mSize;
+
+    /**
+     * Constructs a new {@link SlowQueryLog} keeping the last capacity (>0) operations slower than
+     * the given threshold.
+     */
+    SlowQueryLog(long thresholdMillis, int capacity) {
+        mThresholdNanos = thresholdMillis * 1000000L;
+        mEntries = new Entry[capacity];
+    }
+
+    /**
+     * Return true if an operation that took the given time should be logged.
+     */
+    boolean isSlow(long nanos) {
+        return nanos >= mThresholdNanos;
+    }
+
+    /**
+     * Return the SQL of the query of the given cursor, if it was created by {@link #CURSOR_FACTORY},
+     * or null.
+     */
+    static String getSql(Cursor cursor) {
+        return cursor instanceof StatementCursor ? ((StatementCursor) cursor).sql : null;
+    }
+
+    /**
+     * Log a slow operation, along with the plan of its SQL. Explaining the SQL runs on the
+     * calling thread, but only after an operation already turned out to be slow.
+     *
+     * @param sql           Statement run by the operation
+     * @param selectionArgs Arguments of the selection, only their shape is logged
+     * @param rows          Number of rows returned or affected, or -1 if the operation failed
+     */
+    void add(SQLiteDatabase database, String operation, String pattern, String sql,
+             String[] selectionArgs, int rows, long nanos) {
+        Entry entry = new Entry(System.currentTimeMillis(), operation, pattern, sql,
+                describeArguments(selectionArgs), rows, nanos / 1000, explain(database, sql));
+        Log.w(LOG_TAG, "Slow " + operation + " of " + pattern + " (" + entry.durationMicros + "us): "
+                + sql + " [" + entry.plan + "]");
+        synchronized (mEntries) {
+            mEntries[mNext] = entry;
+            mNext = (mNext + 1) % mEntries.length;
+            mSize = Math.min(mSize + 1, mEntries.length);
+        }
+    }
+
+    /**
+     * Return the shape of the given selection arguments, without their values, which may be
+     * personal data: "null", "number" or "text(length)" for each argument.
+     */
+    private static String describeArguments(String[] selectionArgs) {
+        if (selectionArgs == null) {
+            return "";
+        }
+        String[] shapes = new String[selectionArgs.length];
+        for (int i = 0; i < selectionArgs.length; i++) {
+            String argument = selectionArgs[i];
+            if (argument == null) {
+                shapes[i] = "null";
+            } else if (!argument.isEmpty() && TextUtils.isDigitsOnly(argument)) {
+                shapes[i] = "number";
+            } else {
+                shapes[i] = "text(" + argument.length() + ")";
+            }
+        }
+        return TextUtils.join(", ", shapes);
+    }
+
+    /**
+     * Return the steps of the plan of the given SQL, one per line, or an empty string if it
+     * couldn't be explained. Parameters are left unbound: the plans SQLite chooses don't
+     * depend on their values.
+     */
+    static String explain(SQLiteDatabase database, String sql) {
+        StringBuilder plan = new StringBuilder();
+        try {
+            Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, null);
+            try {
+                int detailIndex = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    if (plan.length() != 0) {
+                        plan.append('\n');
+                    }
+                    plan.append(cursor.getString(detailIndex));
+                }
+            } finally {
+                cursor.close();
+            }
+        } catch (SQLiteException | IllegalArgumentException e) {
+            Log.w(LOG_TAG, "Failed to explain " + sql, e);
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Return a cursor over the logged operations, newest first, with the columns of
+     * {@link SlowQueryEntry}.
+     */
+    Cursor toCursor() {
+        MatrixCursor cursor = new MatrixCursor(new String[]{
+                SlowQueryEntry.COLUMN_TIME,
+                SlowQueryEntry.COLUMN_OPERATION,
+                SlowQueryEntry.COLUMN_PATTERN,
+                SlowQueryEntry.COLUMN_SQL,
+                SlowQueryEntry.COLUMN_ARGUMENTS,
+                SlowQueryEntry.COLUMN_ROWS,
+                SlowQueryEntry.COLUMN_DURATION_US,
+                SlowQueryEntry.COLUMN_PLAN});
+        for (Entry entry : snapshot()) {
+            cursor.addRow(new Object[]{entry.time, entry.operation, entry.pattern, entry.sql,
+                    entry.arguments, entry.rows, entry.durationMicros, entry.plan});
+        }
+        return cursor;
+    }
+
+    /**
+     * Print the logged operations, newest first.
+     */
+    void dump(PrintWriter writer) {
+        writer.println("Slow operations (threshold " + mThresholdNanos / 1000000 + "ms), newest first:");
+        for (Entry entry : snapshot()) {
+            writer.println("  " + entry.operation + " " + entry.pattern + " " + entry.durationMicros
+                    + "us rows=" + entry.rows + " args=[" + entry.arguments + "]");
+            writer.println("    " + entry.sql);
+            writer.println("    " + entry.plan.replace("\n", "\n    "));
+        }
+    }
+
+    /**
+     * Return the logged entries, newest first.
+     */
+    private Entry[] snapshot() {
+        synchronized (mEntries) {
+            Entry[] entries = new Entry[mSize];
+            for (int i = 0; i < mSize; i++) {
+                entries[i] = mEntries[(mNext - 1 - i + mEntries.length) % mEntries.length];
+            }
+            return entries;
+        }
+    }
+}
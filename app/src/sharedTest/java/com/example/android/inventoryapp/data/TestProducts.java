@@ -0,0 +1,85 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+
+/**
+ * Catalog of generated products the tests and benchmarks fill the database with, shared by the
+ * unit and the instrumented tests. The i-th product is "Product i", from supplier
+ * i % {@link #SUPPLIER_COUNT}.
+ */
+final class TestProducts {
+
+    /**
+     * Number of suppliers the products come from
+     */
+    static final int SUPPLIER_COUNT = 30;
+
+    private TestProducts() {
+    }
+
+    /**
+     * Return the values of the i-th product, with the name and mail of its supplier, as they
+     * are inserted through the provider.
+     */
+    static ContentValues productValues(int i) {
+        int supplier = i % SUPPLIER_COUNT;
+        ContentValues values = new ContentValues();
+        values.put(ProductEntry.COLUMN_PRODUCT_NAME, "Product " + i);
+        values.put(ProductEntry.COLUMN_PRODUCT_PRICE, 1 + i % 50);
+        values.put(ProductEntry.COLUMN_PRODUCT_QUANTITY, i % 100);
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER, getSupplierName(supplier));
+        values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL, getSupplierMail(supplier));
+        return values;
+    }
+
+    /**
+     * Return the values of the count products from the start-th one.
+     */
+    static ContentValues[] productValues(int start, int count) {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = productValues(start + i);
+        }
+        return values;
+    }
+
+    /**
+     * Insert the suppliers and the first count products straight into the tables of the given
+     * database, in a single transaction.
+     */
+    static void insertProducts(SQLiteDatabase database, int count) {
+        ContentValues values = new ContentValues();
+        database.beginTransaction();
+        try {
+            long[] supplierIds = new long[SUPPLIER_COUNT];
+            for (int i = 0; i < SUPPLIER_COUNT; i++) {
+                values.put(SupplierEntry.COLUMN_SUPPLIER_NAME, getSupplierName(i));
+                values.put(SupplierEntry.COLUMN_SUPPLIER_MAIL, getSupplierMail(i));
+                supplierIds[i] = database.insertOrThrow(SupplierEntry.TABLE_NAME, null, values);
+            }
+
+            for (int i = 0; i < count; i++) {
+                values = productValues(i);
+                values.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER);
+                values.remove(ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL);
+                values.put(ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID, supplierIds[i % SUPPLIER_COUNT]);
+                database.insertOrThrow(ProductEntry.TABLE_NAME, null, values);
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static String getSupplierName(int supplier) {
+        return "Supplier " + supplier;
+    }
+
+    private static String getSupplierMail(int supplier) {
+        return "supplier" + supplier + "@example.com";
+    }
+}
@@ -0,0 +1,433 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.android.inventoryapp.BuildConfig;
+import com.example.android.inventoryapp.data.InventoryContract.ImportEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+import com.example.android.inventoryapp.data.InventoryContract.ProductStatsEntry;
+import com.example.android.inventoryapp.data.InventoryContract.SupplierEntry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link InventoryMigrations}: every database version, with a product in it, is
+ * migrated to the latest version and checked against the schema and data the app expects. The
+ * migrations that move data are also checked one step at a time, against the schema and rows
+ * written out by hand.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class InventoryMigrationsTest {
+
+    /**
+     * Version from which suppliers have their own table
+     */
+    private static final int SUPPLIERS_VERSION = 9;
+
+    @Test
+    public void migrateKeepsProductsOfEveryVersion() {
+        for (int version = 1; version < InventoryMigrations.LATEST_VERSION; version++) {
+            SQLiteDatabase db = createDatabase(version);
+            try {
+                long id = insertProduct(db, version, "Headphones", 10, 5, "Acme");
+                InventoryMigrations.migrate(db, version, InventoryMigrations.LATEST_VERSION);
+
+                Cursor cursor = db.query(ProductEntry.VIEW_NAME_WITH_SUPPLIERS, new String[]{
+                                ProductEntry.COLUMN_PRODUCT_NAME,
+                                ProductEntry.COLUMN_PRODUCT_PRICE,
+                                ProductEntry.COLUMN_PRODUCT_QUANTITY,
+                                ProductEntry.COLUMN_PRODUCT_SUPPLIER,
+                                ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL,
+                                ProductEntry.COLUMN_PRODUCT_REORDER_THRESHOLD},
+                        ProductEntry._ID + "=?", new String[]{String.valueOf(id)}, null, null, null);
+                try {
+                    assertTrue("Product lost from version " + version, cursor.moveToFirst());
+                    assertEquals("Headphones", cursor.getString(0));
+                    assertEquals(10, cursor.getInt(1));
+                    assertEquals(5, cursor.getInt(2));
+                    assertEquals("Acme", cursor.getString(3));
+                    assertEquals("acme@example.com", cursor.getString(4));
+                    assertEquals(0, cursor.getInt(5));
+                } finally {
+                    cursor.close();
+                }
+
+                assertStats(db, 1, 5, 50);
+                assertEquals("Search index of version " + version, id, search(db, "acme"));
+            } finally {
+                db.close();
+            }
+        }
+    }
+
+    @Test
+    public void migrateDoesNotReuseIdsOfDeletedProducts() {
+        SQLiteDatabase db = createDatabase(SUPPLIERS_VERSION - 1);
+        try {
+            insertProduct(db, SUPPLIERS_VERSION - 1, "Headphones", 10, 5, "Acme");
+            long deleted = insertProduct(db, SUPPLIERS_VERSION - 1, "Speaker", 20, 0, "Acme");
+            db.execSQL("DELETE FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = " + deleted);
+            InventoryMigrations.migrate(db, SUPPLIERS_VERSION - 1, InventoryMigrations.LATEST_VERSION);
+
+            assertEquals(deleted, DatabaseUtils.longForQuery(db, "SELECT seq FROM sqlite_sequence WHERE name = ?",
+                    new String[]{ProductEntry.TABLE_NAME}));
+            long id = insertProduct(db, InventoryMigrations.LATEST_VERSION, "Turntable", 30, 1, "Acme");
+            assertEquals(deleted + 1, id);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void migrationTo5IndexesExistingProducts() {
+        SQLiteDatabase db = createDatabase(4);
+        try {
+            long headphones = insertProduct(db, 4, "Headphones", 10, 5, "Acme");
+            long speaker = insertProduct(db, 4, "Speaker", 20, 0, "Bolt");
+            InventoryMigrations.migrate(db, 4, 5);
+
+            assertEquals(Arrays.asList("name", "supplier"), columns(db, "products_fts"));
+            assertEquals(Arrays.asList("products_fts_after_insert", "products_fts_after_update",
+                    "products_fts_before_delete", "products_fts_before_update"), names(db, "trigger"));
+            assertEquals(headphones, search(db, "headphones"));
+            assertEquals(headphones, search(db, "acme"));
+            assertEquals(speaker, search(db, "speaker"));
+            assertEquals(speaker, search(db, "bolt"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void migrationTo7SummarizesExistingProducts() {
+        SQLiteDatabase db = createDatabase(6);
+        try {
+            insertProduct(db, 6, "Headphones", 10, 5, "Acme");
+            insertProduct(db, 6, "Speaker", 20, 0, "Bolt");
+            insertProduct(db, 6, "Turntable", 3, 7, "Acme");
+            InventoryMigrations.migrate(db, 6, 7);
+
+            assertEquals(Arrays.asList("_id", "sku_count", "unit_count", "stock_value", "out_of_stock_count"),
+                    columns(db, "product_stats"));
+            assertEquals(Collections.singletonList("1|3|12|71|1"), rows(db, "product_stats"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void migrationTo7SummarizesAnEmptyInventory() {
+        SQLiteDatabase db = createDatabase(6);
+        try {
+            InventoryMigrations.migrate(db, 6, 7);
+
+            assertEquals(Collections.singletonList("1|0|0|0|0"), rows(db, "product_stats"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void migrationTo9MovesSuppliersToTheirTable() {
+        SQLiteDatabase db = createDatabase(8);
+        try {
+            long headphones = insertProduct(db, 8, "Headphones", 10, 5, "Acme");
+            long speaker = insertProduct(db, 8, "Speaker", 20, 0, "Bolt");
+            long turntable = insertProduct(db, 8, "Turntable", 3, 7, "Acme");
+            db.execSQL("UPDATE products SET picture = 'file:///turntable.jpg', thumbnail = 'file:///thumbnail.jpg',"
+                    + " preview = 'file:///preview.jpg', reorder_threshold = 4 WHERE _id = " + turntable);
+            InventoryMigrations.migrate(db, 8, 9);
+
+            assertEquals(Arrays.asList("_id", "name", "mail"), columns(db, "suppliers"));
+            assertEquals(Arrays.asList("1|Acme|acme@example.com", "2|Bolt|bolt@example.com"),
+                    rows(db, "suppliers"));
+
+            assertEquals(Arrays.asList("_id", "name", "price", "quantity", "picture", "thumbnail", "preview",
+                    "reorder_threshold", "supplier_id"), columns(db, "products"));
+            assertEquals(Arrays.asList(
+                    headphones + "|Headphones|10|5|null|null|null|0|1",
+                    speaker + "|Speaker|20|0|null|null|null|0|2",
+                    turntable + "|Turntable|3|7|file:///turntable.jpg|file:///thumbnail.jpg|file:///preview.jpg|4|1"),
+                    rows(db, "products"));
+
+            assertEquals(Arrays.asList("_id", "name", "price", "quantity", "picture", "thumbnail", "preview",
+                    "reorder_threshold", "supplier_id", "supplier", "supplier_mail"),
+                    columns(db, "products_with_suppliers"));
+            assertEquals(Arrays.asList(
+                    headphones + "|Headphones|10|5|null|null|null|0|1|Acme|acme@example.com",
+                    speaker + "|Speaker|20|0|null|null|null|0|2|Bolt|bolt@example.com",
+                    turntable + "|Turntable|3|7|file:///turntable.jpg|file:///thumbnail.jpg|file:///preview.jpg|4|1"
+                            + "|Acme|acme@example.com"),
+                    rows(db, "products_with_suppliers"));
+
+            // The full-text index is rebuilt with its own copy of the supplier names
+            assertEquals(Arrays.asList(
+                    headphones + "|Headphones|Acme",
+                    speaker + "|Speaker|Bolt",
+                    turntable + "|Turntable|Acme"),
+                    rows(db, "products_fts"));
+            assertEquals(speaker, search(db, "bolt"));
+
+            // The summary isn't rebuilt, and still counts the products
+            assertStats(db, 3, 12, 71);
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void migrateCreatesIndexesAndTriggers() {
+        SQLiteDatabase db = createDatabase(1);
+        try {
+            InventoryMigrations.migrate(db, 1, InventoryMigrations.LATEST_VERSION);
+
+            List<String> indexes = names(db, "index");
+            assertTrue(indexes.contains(ProductEntry.INDEX_NAME));
+            assertTrue(indexes.contains(ProductEntry.INDEX_QUANTITY));
+            assertTrue(indexes.contains(ProductEntry.INDEX_PRICE));
+            assertTrue(indexes.contains(ProductEntry.INDEX_SUPPLIER_ID));
+            assertTrue(indexes.contains(ProductEntry.INDEX_SUPPLIER_ID_PRICE));
+            assertTrue(indexes.contains(ProductEntry.INDEX_SUPPLIER_ID_QUANTITY));
+            // The supplier text moved to the suppliers table, along with its index
+            assertFalse(indexes.contains(ProductEntry.INDEX_SUPPLIER));
+
+            List<String> triggers = names(db, "trigger");
+            assertTrue(triggers.contains("products_fts_after_insert"));
+            assertTrue(triggers.contains("products_fts_after_update"));
+            assertTrue(triggers.contains("products_fts_after_delete"));
+            assertTrue(triggers.contains("suppliers_fts_after_update"));
+            assertTrue(triggers.contains("product_stats_after_insert"));
+            assertTrue(triggers.contains("product_stats_after_update"));
+            assertTrue(triggers.contains("product_stats_after_delete"));
+            // Triggers of the products table dropped by the supplier migration
+            assertFalse(triggers.contains("products_fts_before_update"));
+            assertFalse(triggers.contains("products_fts_before_delete"));
+
+            assertTrue(names(db, "table").contains(ImportEntry.TABLE_NAME));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void migratedTriggersKeepDerivedDataUpToDate() {
+        SQLiteDatabase db = createDatabase(1);
+        try {
+            long headphones = insertProduct(db, 1, "Headphones", 10, 5, "Acme");
+            InventoryMigrations.migrate(db, 1, InventoryMigrations.LATEST_VERSION);
+
+            long speaker = insertProduct(db, InventoryMigrations.LATEST_VERSION, "Speaker", 20, 0, "Bolt");
+            assertStats(db, 2, 5, 50);
+            assertEquals(speaker, search(db, "speaker"));
+
+            db.execSQL("UPDATE " + ProductEntry.TABLE_NAME + " SET " + ProductEntry.COLUMN_PRODUCT_QUANTITY
+                    + " = 3 WHERE " + ProductEntry._ID + " = " + speaker);
+            assertStats(db, 2, 8, 110);
+
+            // Renaming a supplier renames it in the search index of its products
+            db.execSQL("UPDATE " + SupplierEntry.TABLE_NAME + " SET " + SupplierEntry.COLUMN_SUPPLIER_NAME
+                    + " = 'Zenith' WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = 'Acme'");
+            assertEquals(headphones, search(db, "zenith"));
+            assertEquals(-1, search(db, "acme"));
+
+            db.execSQL("DELETE FROM " + ProductEntry.TABLE_NAME + " WHERE " + ProductEntry._ID + " = " + headphones);
+            assertStats(db, 1, 3, 60);
+            assertEquals(-1, search(db, "headphones"));
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    public void upgradeMatchesCreatedSchema() {
+        Context context = RuntimeEnvironment.application;
+        SQLiteDatabase created = new InventoryDbHelper(context, "created.db", false).getWritableDatabase();
+        List<String> createdSchema = schema(created);
+        created.close();
+
+        for (int version = 1; version < InventoryMigrations.LATEST_VERSION; version++) {
+            String name = "upgraded_" + version + ".db";
+            File file = context.getDatabasePath(name);
+            assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+            SQLiteDatabase old = SQLiteDatabase.openOrCreateDatabase(file, null);
+            buildSchema(old, version);
+            insertProduct(old, version, "Headphones", 10, 5, "Acme");
+            old.setVersion(version);
+            old.close();
+
+            // Opening the database through the helper upgrades it
+            SQLiteDatabase upgraded = new InventoryDbHelper(context, name, false).getWritableDatabase();
+            try {
+                assertEquals(InventoryMigrations.LATEST_VERSION, upgraded.getVersion());
+                assertEquals("Schema upgraded from version " + version, createdSchema, schema(upgraded));
+            } finally {
+                upgraded.close();
+            }
+        }
+    }
+
+    /**
+     * Return an empty in-memory database at the given version of the schema.
+     */
+    private static SQLiteDatabase createDatabase(int version) {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.setForeignKeyConstraintsEnabled(true);
+        buildSchema(db, version);
+        return db;
+    }
+
+    private static void buildSchema(SQLiteDatabase db, int version) {
+        db.execSQL(InventoryMigrations.SQL_CREATE_PRODUCTS_TABLE_V1);
+        InventoryMigrations.migrate(db, 1, version);
+    }
+
+    /**
+     * Insert a product in a database at the given version of the schema, return its id.
+     */
+    private static long insertProduct(SQLiteDatabase db, int version, String name, int price, int quantity,
+                                      String supplier) {
+        String mail = supplier.toLowerCase() + "@example.com";
+        if (version < SUPPLIERS_VERSION) {
+            db.execSQL("INSERT INTO " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER + ", " + ProductEntry.COLUMN_PRODUCT_SUPPLIER_MAIL
+                            + ") VALUES (?, ?, ?, ?, ?)",
+                    new Object[]{name, price, quantity, supplier, mail});
+        } else {
+            db.execSQL("INSERT OR IGNORE INTO " + SupplierEntry.TABLE_NAME + " ("
+                            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_MAIL
+                            + ") VALUES (?, ?)",
+                    new Object[]{supplier, mail});
+            db.execSQL("INSERT INTO " + ProductEntry.TABLE_NAME + " (" + ProductEntry.COLUMN_PRODUCT_NAME + ", "
+                            + ProductEntry.COLUMN_PRODUCT_PRICE + ", " + ProductEntry.COLUMN_PRODUCT_QUANTITY + ", "
+                            + ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + ") SELECT ?, ?, ?, " + SupplierEntry._ID
+                            + " FROM " + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry.COLUMN_SUPPLIER_NAME + " = ?",
+                    new Object[]{name, price, quantity, supplier});
+        }
+        return DatabaseUtils.longForQuery(db, "SELECT last_insert_rowid()", null);
+    }
+
+    private static void assertStats(SQLiteDatabase db, long skuCount, long unitCount, long stockValue) {
+        Cursor cursor = db.query(ProductStatsEntry.TABLE_NAME, new String[]{
+                        ProductStatsEntry.COLUMN_SKU_COUNT,
+                        ProductStatsEntry.COLUMN_UNIT_COUNT,
+                        ProductStatsEntry.COLUMN_STOCK_VALUE},
+                null, null, null, null, null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(skuCount, cursor.getLong(0));
+            assertEquals(unitCount, cursor.getLong(1));
+            assertEquals(stockValue, cursor.getLong(2));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Return the id of the single product the full-text index matches for the given query,
+     * or -1 if there is none.
+     */
+    private static long search(SQLiteDatabase db, String query) {
+        Cursor cursor = db.rawQuery("SELECT docid FROM " + ProductEntry.TABLE_NAME_FTS + " WHERE "
+                + ProductEntry.TABLE_NAME_FTS + " MATCH ?", new String[]{query});
+        try {
+            if (!cursor.moveToFirst()) {
+                return -1;
+            }
+            assertEquals(1, cursor.getCount());
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static List<String> names(SQLiteDatabase db, String type) {
+        List<String> names = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = ? ORDER BY name",
+                new String[]{type});
+        try {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+    /**
+     * Return the names of the columns of the given table or view, in order.
+     */
+    private static List<String> columns(SQLiteDatabase db, String table) {
+        List<String> columns = new ArrayList<>();
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            int name = cursor.getColumnIndexOrThrow("name");
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(name));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    /**
+     * Return every row of the given table or view, in row id order, as its values joined by "|".
+     */
+    private static List<String> rows(SQLiteDatabase db, String table) {
+        List<String> rows = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT " + (table.endsWith("_fts") ? "docid, " : "") + "* FROM " + table
+                + " ORDER BY " + (table.endsWith("_fts") ? "docid" : "_id"), null);
+        try {
+            while (cursor.moveToNext()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 0; i < cursor.getColumnCount(); i++) {
+                    if (i > 0) {
+                        row.append('|');
+                    }
+                    row.append(cursor.getString(i));
+                }
+                rows.add(row.toString());
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    /**
+     * Return the type, name and SQL of every table, index, trigger and view of the database.
+     */
+    private static List<String> schema(SQLiteDatabase db) {
+        List<String> schema = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT type, name, sql FROM sqlite_master"
+                + " WHERE name NOT LIKE 'sqlite_%' AND name != 'android_metadata' ORDER BY type, name", null);
+        try {
+            while (cursor.moveToNext()) {
+                schema.add(cursor.getString(0) + " " + cursor.getString(1) + ": " + cursor.getString(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,305 @@
+package com.example.android.inventoryapp.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.example.android.inventoryapp.BuildConfig;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Benchmark of the {@link InventoryProvider} operations, and of the {@link ProductExporter}
+ * export reading the whole catalog a page at a time, on catalogs of 1k, 10k and 100k products,
+ * running on the JVM against Robolectric's SQLite. Only runs when the "benchmark"
+ * system property is set, see app/build.gradle.
+ * <p>
+ * Each catalog size writes one JSON object per operation, one per line, to
+ * inventory_provider_&lt;size&gt;.json in the directory of the "benchmark.output" property, with
+ * the throughput and the latency percentiles of the operation.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class InventoryProviderBenchmark {
+
+    private static final String PROPERTY_ENABLED = "benchmark";
+    private static final String PROPERTY_OUTPUT = "benchmark.output";
+
+    /**
+     * Number of measured operations of each single-row operation
+     */
+    private static final int OPERATIONS = 500;
+
+    /**
+     * Number of operations run before measuring each single-row operation
+     */
+    private static final int WARMUP_OPERATIONS = 100;
+
+    /**
+     * Number of measured full-list queries
+     */
+    private static final int LIST_QUERIES = 10;
+
+    /**
+     * Number of measured exports of the whole catalog
+     */
+    private static final int EXPORTS = 3;
+
+    /**
+     * Number of products per bulk insert
+     */
+    private static final int BULK_INSERT_SIZE = 1000;
+
+    /**
+     * An operation whose latency is measured.
+     */
+    private interface Operation {
+        /**
+         * Run the operation for the i-th time.
+         */
+        void run(int i);
+    }
+
+    /**
+     * Measurements of an operation.
+     */
+    private static final class Result {
+        final String operation;
+        final int operations;
+        final int rowsPerOperation;
+        final long totalNanos;
+        final long[] nanos;
+
+        Result(String operation, int rowsPerOperation, long[] nanos) {
+            this.operation = operation;
+            this.operations = nanos.length;
+            this.rowsPerOperation = rowsPerOperation;
+            long total = 0;
+            for (long operationNanos : nanos) {
+                total += operationNanos;
+            }
+            this.totalNanos = total;
+            this.nanos = nanos.clone();
+            Arrays.sort(this.nanos);
+        }
+
+        double percentileMicros(double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * nanos.length) - 1;
+            return nanos[Math.max(0, index)] / 1e3;
+        }
+
+        String toJson(int catalogRows) {
+            double seconds = totalNanos / 1e9;
+            return String.format(Locale.US, "{\"catalog_rows\":%d,\"operation\":\"%s\",\"operations\":%d,"
+                            + "\"ops_per_sec\":%.1f,\"rows_per_sec\":%.1f,"
+                            + "\"p50_us\":%.1f,\"p90_us\":%.1f,\"p99_us\":%.1f,\"max_us\":%.1f}",
+                    catalogRows, operation, operations,
+                    operations / seconds, (double) operations * rowsPerOperation / seconds,
+                    percentileMicros(50), percentileMicros(90), percentileMicros(99),
+                    percentileMicros(100));
+        }
+    }
+
+    private InventoryProvider mProvider;
+
+    /**
+     * Fixed seed, so that every run reads and writes the same products
+     */
+    private final Random mRandom = new Random(42);
+
+    @Before
+    public void setUp() {
+        assumeTrue("Benchmarks only run with -Pbenchmark", Boolean.getBoolean(PROPERTY_ENABLED));
+        // Robolectric gives every test a new app, with an empty database
+        mProvider = Robolectric.setupContentProvider(InventoryProvider.class,
+                InventoryContract.CONTENT_AUTHORITY);
+    }
+
+    @Test
+    public void catalogOf1k() throws IOException {
+        benchmark(1000);
+    }
+
+    @Test
+    public void catalogOf10k() throws IOException {
+        benchmark(10000);
+    }
+
+    @Test
+    public void catalogOf100k() throws IOException {
+        benchmark(100000);
+    }
+
+    private void benchmark(int rows) throws IOException {
+        List<Result> results = new ArrayList<>();
+        // Bulk insert fills the catalog the other operations run against
+        results.add(measureBulkInsert(rows));
+        results.add(measureInsert(rows));
+        results.add(measureSingleQuery(rows));
+        results.add(measureListQuery(rows));
+        results.add(measureExport(rows + WARMUP_OPERATIONS + OPERATIONS));
+        results.add(measureUpdate(rows));
+        results.add(measureDelete(rows));
+        write(rows, results);
+    }
+
+    private Result measureBulkInsert(final int rows) {
+        return measure("bulk_insert", rows / BULK_INSERT_SIZE, 0, BULK_INSERT_SIZE, new Operation() {
+            @Override
+            public void run(int i) {
+                ContentValues[] values = TestProducts.productValues(i * BULK_INSERT_SIZE, BULK_INSERT_SIZE);
+                assertEquals(BULK_INSERT_SIZE, mProvider.bulkInsert(ProductEntry.CONTENT_URI, values));
+            }
+        });
+    }
+
+    private Result measureInsert(final int rows) {
+        return measure("insert", OPERATIONS, WARMUP_OPERATIONS, 1, new Operation() {
+            @Override
+            public void run(int i) {
+                assertNotNull(mProvider.insert(ProductEntry.CONTENT_URI, TestProducts.productValues(rows + i)));
+            }
+        });
+    }
+
+    private Result measureSingleQuery(final int rows) {
+        return measure("query_single", OPERATIONS, WARMUP_OPERATIONS, 1, new Operation() {
+            @Override
+            public void run(int i) {
+                Cursor cursor = mProvider.query(productUri(rows), null, null, null, null);
+                try {
+                    assertEquals(1, cursor.getCount());
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+    }
+
+    private Result measureListQuery(final int rows) {
+        return measure("query_list", LIST_QUERIES, 1, rows, new Operation() {
+            @Override
+            public void run(int i) {
+                Cursor cursor = mProvider.query(ProductEntry.CONTENT_URI, null, null, null, null);
+                try {
+                    while (cursor.moveToNext()) {
+                        cursor.getString(cursor.getColumnIndex(ProductEntry.COLUMN_PRODUCT_NAME));
+                    }
+                } finally {
+                    cursor.close();
+                }
+            }
+        });
+    }
+
+    private Result measureExport(final int catalogRows) throws IOException {
+        final Uri document = Uri.fromFile(new File(getOutputDirectory(), "export.csv"));
+        return measure("export", EXPORTS, 1, catalogRows, new Operation() {
+            @Override
+            public void run(int i) {
+                try {
+                    assertEquals(catalogRows, ProductExporter.exportProducts(RuntimeEnvironment.application,
+                            document, ProductExporter.FORMAT_CSV, null, null));
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+    }
+
+    private Result measureUpdate(final int rows) {
+        final ContentValues values = new ContentValues();
+        return measure("update", OPERATIONS, WARMUP_OPERATIONS, 1, new Operation() {
+            @Override
+            public void run(int i) {
+                values.put(ProductEntry.COLUMN_PRODUCT_PRICE, 1 + i % 50);
+                assertEquals(1, mProvider.update(productUri(rows), values, null, null));
+            }
+        });
+    }
+
+    private Result measureDelete(final int rows) {
+        // Delete distinct products, spread over the catalog
+        final int step = rows / (OPERATIONS + WARMUP_OPERATIONS);
+        return measure("delete", OPERATIONS, WARMUP_OPERATIONS, 1, new Operation() {
+            @Override
+            public void run(int i) {
+                Uri uri = ContentUris.withAppendedId(ProductEntry.CONTENT_URI, 1 + (long) i * step);
+                assertEquals(1, mProvider.delete(uri, null, null));
+            }
+        });
+    }
+
+    /**
+     * Run the given operation warmup times, then measure the latency of the next count runs.
+     */
+    private static Result measure(String name, int count, int warmup, int rowsPerOperation,
+                                  Operation operation) {
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+        long[] nanos = new long[count];
+        for (int i = 0; i < count; i++) {
+            long start = System.nanoTime();
+            operation.run(warmup + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        return new Result(name, rowsPerOperation, nanos);
+    }
+
+    /**
+     * Return the content URI of a random product among the first rows ones.
+     */
+    private Uri productUri(int rows) {
+        return ContentUris.withAppendedId(ProductEntry.CONTENT_URI, 1 + mRandom.nextInt(rows));
+    }
+
+    /**
+     * Return the directory of the "benchmark.output" property, creating it if needed.
+     */
+    private static File getOutputDirectory() throws IOException {
+        File directory = new File(System.getProperty(PROPERTY_OUTPUT, "build/benchmark")).getAbsoluteFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
+        }
+        return directory;
+    }
+
+    /**
+     * Write the results to the output file of the given catalog size.
+     */
+    private static void write(int rows, List<Result> results) throws IOException {
+        Writer writer = new FileWriter(new File(getOutputDirectory(), "inventory_provider_" + rows + ".json"));
+        try {
+            for (Result result : results) {
+                String json = result.toJson(rows);
+                writer.write(json);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
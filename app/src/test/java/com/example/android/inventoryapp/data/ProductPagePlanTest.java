@@ -0,0 +1,123 @@
+package com.example.android.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.example.android.inventoryapp.BuildConfig;
+import com.example.android.inventoryapp.data.InventoryContract.ProductEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that every page of the catalog, whatever its sort order and filters, is read in the
+ * index order of its sort column from the product it follows, instead of being sorted, both
+ * before and after ANALYZE.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ProductPagePlanTest {
+
+    private static final int PRODUCT_COUNT = 300;
+    private static final int PAGE_SIZE = 50;
+
+    private static final String[] SORT_COLUMNS = {
+            ProductEntry.COLUMN_PRODUCT_NAME,
+            ProductEntry.COLUMN_PRODUCT_PRICE,
+            ProductEntry.COLUMN_PRODUCT_QUANTITY};
+
+    /**
+     * Filters of the catalog
+     */
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_SUPPLIER = 1;
+    private static final int FILTER_STOCK_RANGE = 2;
+    private static final int FILTER_SUPPLIER_AND_STOCK_RANGE = 3;
+
+    private InventoryProvider mProvider;
+
+    private SQLiteDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mProvider = Robolectric.setupContentProvider(InventoryProvider.class,
+                InventoryContract.CONTENT_AUTHORITY);
+        mProvider.bulkInsert(ProductEntry.CONTENT_URI, TestProducts.productValues(0, PRODUCT_COUNT));
+        mDatabase = new InventoryDbHelper(RuntimeEnvironment.application).getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void pagesSeekOnTheirSortColumnWithoutStatistics() {
+        assertPagesSeekOnTheirSortColumn();
+    }
+
+    @Test
+    public void pagesSeekOnTheirSortColumnWithStatistics() {
+        mDatabase.execSQL("ANALYZE");
+        assertPagesSeekOnTheirSortColumn();
+    }
+
+    private void assertPagesSeekOnTheirSortColumn() {
+        for (String sortColumn : SORT_COLUMNS) {
+            for (int filter = FILTER_NONE; filter <= FILTER_SUPPLIER_AND_STOCK_RANGE; filter++) {
+                String plan = explainPage(sortColumn, filter);
+                String description = "Page by " + sortColumn + " with filter " + filter + ": " + plan;
+                assertFalse(description, plan.contains("TEMP B-TREE"));
+                assertTrue(description, plan.contains(sortColumn + ">"));
+            }
+        }
+    }
+
+    /**
+     * Return the plan of the query of the second page of products sorted by the given column,
+     * with the given filter, built the way the catalog builds it.
+     */
+    private String explainPage(String sortColumn, int filter) {
+        String afterValue = ProductEntry.COLUMN_PRODUCT_NAME.equals(sortColumn) ? "Product 1" : "10";
+        Uri uri = ProductEntry.buildPageUri(PAGE_SIZE, sortColumn, afterValue, 1);
+
+        String selection = null;
+        List<String> selectionArgs = new ArrayList<>();
+        if (filter == FILTER_SUPPLIER || filter == FILTER_SUPPLIER_AND_STOCK_RANGE) {
+            selection = DatabaseUtils.concatenateWhere(selection, ProductEntry.COLUMN_PRODUCT_SUPPLIER_ID + "=?");
+            selectionArgs.add("1");
+        }
+        if (filter == FILTER_STOCK_RANGE || filter == FILTER_SUPPLIER_AND_STOCK_RANGE) {
+            String quantity = ProductEntry.getPageRangeOperand(sortColumn, ProductEntry.COLUMN_PRODUCT_QUANTITY);
+            selection = DatabaseUtils.concatenateWhere(selection, quantity + ">=? AND " + quantity + "<=?");
+            selectionArgs.add(String.valueOf(ProductEntry.MINIMUM_QUANTITY + 1));
+            selectionArgs.add("50");
+        }
+
+        Cursor cursor = mProvider.query(uri, null, selection,
+                selectionArgs.toArray(new String[selectionArgs.size()]), ProductEntry.getPageSortOrder(sortColumn));
+        String sql;
+        try {
+            sql = SlowQueryLog.getSql(cursor);
+        } finally {
+            cursor.close();
+        }
+        assertNotNull(sql);
+        return SlowQueryLog.explain(mDatabase, sql);
+    }
+}